@@ -0,0 +1,443 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Batch runner that spreads a corpus of puzzles over several worker JVMs on the
+ * local machine, so large runs aren't limited by the heap of a single JVM. Each
+ * worker is a BatchWorker process fed puzzle file names over its standard input.
+ * Idle workers take the next puzzle from a shared queue, so a worker stuck on a
+ * slow puzzle never holds up the others.
+ * <p>
+ * A worker that crashes or runs past the timeout is killed and restarted, and its
+ * puzzle is put back on the queue until it runs out of retries. The results and
+ * Timing and MemoryStats counts of every puzzle are merged into one CSV file.
+ */
+public class BatchCoordinator
+{
+    private static final String[] METRICS = {"permutationsGenerated", "permutationsAllocated",
+            "permutationsAttempted", "earlyPruned", "iterations", "peakHeapBytes", "allocatedBytes", "gcCount",
+            "gcMillis"};
+
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+    private long timeoutSeconds = 600;
+    private int retries = 2;
+    private String heap = null;
+    private String cacheDirectory = null;
+    private String cacheLimit = null;
+    private String profileFile = null;
+    private String resultsFile = "Batch Results.csv";
+
+    private final LinkedBlockingQueue<Job> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger remaining = new AtomicInteger();
+    private final ArrayList<Result> results = new ArrayList<>();
+    private final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor();
+
+    /**
+     * A puzzle waiting on the queue and the number of times it has been tried.
+     */
+    private static class Job
+    {
+        final String fileName;
+        int attempts = 0;
+
+        Job(String fileName)
+        {
+            this.fileName = fileName;
+        }
+    }
+
+    /**
+     * A running worker JVM and the streams used to talk to it.
+     */
+    private static class WorkerProcess
+    {
+        final Process process;
+        final PrintWriter writer;
+        final BufferedReader reader;
+
+        WorkerProcess(Process process)
+        {
+            this.process = process;
+            writer = new PrintWriter(process.getOutputStream(), true);
+            reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        }
+    }
+
+    /**
+     * The outcome of one puzzle.
+     */
+    private static class Result
+    {
+        final String fileName;
+        final String status;
+        final int attempts;
+        final long nanos;
+        final LinkedHashMap<String, Long> counts;
+        final String board;
+
+        Result(String fileName, String status, int attempts, long nanos, LinkedHashMap<String, Long> counts,
+               String board)
+        {
+            this.fileName = fileName;
+            this.status = status;
+            this.attempts = attempts;
+            this.nanos = nanos;
+            this.counts = counts;
+            this.board = board;
+        }
+    }
+
+    /**
+     * Runs a batch.
+     *
+     * @param args "-workers n", "-timeout seconds" per puzzle, "-retries n", "-heap size"
+     *             for the -Xmx of each worker, "-out file", "-permutationCache dir" and
+     *             "-cacheLimit MiB" for a permutation cache shared by the workers,
+     *             "-profile file" for the tuned thresholds of the workers and then the
+     *             puzzle files or directories of puzzle files.
+     */
+    public static void main(String[] args)
+    {
+        BatchCoordinator coordinator = new BatchCoordinator();
+        ArrayList<String> corpus = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-workers" -> coordinator.workerCount = Integer.parseInt(args[++i]);
+                case "-timeout" -> coordinator.timeoutSeconds = Long.parseLong(args[++i]);
+                case "-retries" -> coordinator.retries = Integer.parseInt(args[++i]);
+                case "-heap" -> coordinator.heap = args[++i];
+                case "-out" -> coordinator.resultsFile = args[++i];
+                case "-permutationCache" -> coordinator.cacheDirectory = args[++i];
+                case "-cacheLimit" -> coordinator.cacheLimit = args[++i];
+                case "-profile" -> coordinator.profileFile = args[++i];
+                default -> addPuzzles(new File(args[i]), corpus);
+            }
+        }
+
+        if (!coordinator.run(corpus))
+            System.exit(1);
+    }
+
+    /**
+     * Adds a puzzle file, or every .txt file of a directory, to the corpus.
+     *
+     * @param file The puzzle file or directory.
+     * @param corpus The puzzle files to solve.
+     */
+    private static void addPuzzles(File file, ArrayList<String> corpus)
+    {
+        File[] files = file.listFiles((dir, name) -> name.endsWith(".txt"));
+
+        if (files == null)
+        {
+            corpus.add(file.getPath());
+            return;
+        }
+
+        Arrays.sort(files);
+        for (File puzzle : files)
+            corpus.add(puzzle.getPath());
+    }
+
+    /**
+     * Solves every puzzle of the corpus on the worker processes and writes the
+     * merged results once the queue has drained.
+     *
+     * @param corpus The puzzle files to solve.
+     * @return True if every puzzle was solved.
+     */
+    public boolean run(List<String> corpus)
+    {
+        for (String fileName : corpus)
+            queue.add(new Job(fileName));
+        remaining.set(corpus.size());
+
+        ArrayList<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+
+        for (int i = 0; i < Math.min(workerCount, corpus.size()); i++)
+        {
+            int workerId = i;
+            Thread thread = new Thread(() -> runWorker(workerId), "batch-worker-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        try
+        {
+            for (Thread thread : threads)
+                thread.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            watchdog.shutdownNow();
+        }
+
+        return report(System.nanoTime() - start);
+    }
+
+    /**
+     * Feeds puzzles from the queue to one worker process until every puzzle has a
+     * result. The process is restarted whenever it crashes or times out.
+     *
+     * @param workerId The number of the worker, used in the log messages.
+     */
+    private void runWorker(int workerId)
+    {
+        WorkerProcess worker = null;
+
+        try
+        {
+            while (remaining.get() > 0)
+            {
+                // A job can still be put back by a worker that crashed, so keep
+                // polling until every puzzle has a result.
+                Job job = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (job == null)
+                    continue;
+
+                job.attempts++;
+                String line = null;
+
+                // A worker that can't be started counts as a crash, so the job is
+                // retried or given up on and never lost.
+                try
+                {
+                    if (worker == null)
+                        worker = startWorker();
+                    line = sendJob(worker, job);
+                } catch (IOException e)
+                {
+                    System.err.printf("Worker %d could not start: %s%n", workerId, e.getMessage());
+                }
+
+                Result result = line == null ? null : parseResult(line, job.attempts);
+                if (result != null)
+                {
+                    addResult(result);
+                    continue;
+                }
+
+                // A malformed result line means the worker is in an unknown state,
+                // so it is treated as a crash too.
+                if (line != null)
+                    System.err.printf("Worker %d sent a malformed result: %s%n", workerId, line);
+
+                if (worker != null)
+                    worker.process.destroyForcibly();
+                worker = null;
+
+                if (job.attempts <= retries)
+                {
+                    System.err.printf("Worker %d lost %s, retrying (attempt %d)%n", workerId, job.fileName,
+                            job.attempts);
+                    queue.add(job);
+                }
+                else
+                {
+                    System.err.printf("Worker %d lost %s, giving up after %d attempts%n", workerId,
+                            job.fileName, job.attempts);
+                    addResult(new Result(job.fileName, "failed", job.attempts, 0, new LinkedHashMap<>(), ""));
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            // Closing standard input lets the worker exit on its own.
+            if (worker != null)
+                worker.writer.close();
+        }
+    }
+
+    /**
+     * Starts a worker JVM on the same classpath as this one.
+     *
+     * @return The worker process.
+     * @throws IOException If the process can't be started.
+     */
+    private WorkerProcess startWorker() throws IOException
+    {
+        ArrayList<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+
+        if (heap != null)
+            command.add("-Xmx" + heap);
+
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), "BatchWorker"));
+
+        if (cacheDirectory != null)
+            command.addAll(List.of("-permutationCache", cacheDirectory));
+        if (cacheLimit != null)
+            command.addAll(List.of("-cacheLimit", cacheLimit));
+        if (profileFile != null)
+            command.addAll(List.of("-profile", profileFile));
+
+        return new WorkerProcess(new ProcessBuilder(command)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start());
+    }
+
+    /**
+     * Sends one puzzle to a worker process and waits for its result line. The
+     * process is killed if it doesn't answer before the timeout.
+     *
+     * @param worker The worker process.
+     * @param job The puzzle to solve.
+     * @return The result line, or null if the worker crashed or timed out.
+     */
+    private String sendJob(WorkerProcess worker, Job job)
+    {
+        ScheduledFuture<?> timeout = watchdog.schedule(worker.process::destroyForcibly, timeoutSeconds,
+                TimeUnit.SECONDS);
+
+        try
+        {
+            worker.writer.println(job.fileName);
+            return worker.reader.readLine();
+        } catch (IOException e)
+        {
+            return null;
+        } finally
+        {
+            timeout.cancel(false);
+        }
+    }
+
+    /**
+     * Parses a result line written by a BatchWorker.
+     *
+     * @param line The result line.
+     * @param attempts The number of times the puzzle was tried.
+     * @return The result of the puzzle, or null if the line isn't a well formed result.
+     */
+    private static Result parseResult(String line, int attempts)
+    {
+        String[] fields = line.split("\t", -1);
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+
+        if (fields.length != 5)
+            return null;
+
+        try
+        {
+            if (!fields[3].isEmpty())
+                for (String pair : fields[3].split(";"))
+                {
+                    String[] nameValue = pair.split("=", -1);
+                    if (nameValue.length != 2)
+                        return null;
+                    counts.put(nameValue[0], Long.parseLong(nameValue[1]));
+                }
+
+            return new Result(fields[0], fields[1], attempts, Long.parseLong(fields[2]), counts, fields[4]);
+        } catch (NumberFormatException e)
+        {
+            return null;
+        }
+    }
+
+    private void addResult(Result result)
+    {
+        synchronized (results)
+        {
+            results.add(result);
+        }
+
+        remaining.decrementAndGet();
+        System.out.printf("%s: %s in %s%n", result.fileName, result.status, Timing.formatTime(result.nanos));
+    }
+
+    /**
+     * Writes the result of every puzzle to the results file, followed by a total
+     * row of the merged counts, and prints a summary.
+     *
+     * @param wallTime The wall time of the whole batch.
+     * @return True if every puzzle was solved.
+     */
+    private boolean report(long wallTime)
+    {
+        long[] totals = new long[METRICS.length];
+        long totalTime = 0;
+        int solved = 0;
+
+        try (PrintWriter pw = new PrintWriter(new FileWriter(resultsFile)))
+        {
+            pw.println("puzzle,status,attempts,nanos," + String.join(",", METRICS) + ",board");
+
+            for (Result result : results)
+            {
+                StringBuilder sb = new StringBuilder();
+                sb.append(csvField(result.fileName)).append(',').append(csvField(result.status)).append(',')
+                        .append(result.attempts).append(',').append(result.nanos);
+
+                for (int i = 0; i < METRICS.length; i++)
+                {
+                    long value = result.counts.getOrDefault(METRICS[i], 0L);
+                    // The peak heap of the batch is the largest peak of a puzzle, not their sum.
+                    totals[i] = METRICS[i].equals("peakHeapBytes") ? Math.max(totals[i], value) : totals[i] + value;
+                    sb.append(',').append(value);
+                }
+
+                pw.println(sb.append(',').append(csvField(result.board)));
+                totalTime += result.nanos;
+                if (result.status.equals("solved"))
+                    solved++;
+            }
+
+            StringBuilder sb = new StringBuilder("total,,,").append(totalTime);
+            for (long total : totals)
+                sb.append(',').append(total);
+            pw.println(sb.append(','));
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        System.out.printf("Solved %d of %d puzzles in %s (%s of solving)%n", solved, results.size(),
+                Timing.formatTime(wallTime), Timing.formatTime(totalTime));
+        System.out.println("Results written to " + resultsFile);
+
+        return solved == results.size();
+    }
+
+    /**
+     * Quotes a CSV field if it holds a separator, a quote, a space or a line break,
+     * doubling any quotes inside it. Puzzle file names often have spaces.
+     *
+     * @param field The field.
+     * @return The field as written to the results file.
+     */
+    private static String csvField(String field)
+    {
+        for (int i = 0; i < field.length(); i++)
+        {
+            char c = field.charAt(i);
+            if (c == ',' || c == '"' || c == ' ' || c == '\n' || c == '\r')
+                return '"' + field.replace("\"", "\"\"") + '"';
+        }
+
+        return field;
+    }
+}
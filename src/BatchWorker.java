@@ -0,0 +1,120 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+
+/**
+ * Worker process started by the BatchCoordinator. Reads one puzzle file name per
+ * line from standard input, solves it and writes one result line per puzzle to
+ * standard output. The worker exits when standard input is closed.
+ * <p>
+ * A result line is tab separated: the puzzle file, the status (solved, invalid,
+ * unsolvable, stalled when line solving can't finish the board, or error), the solve time in nanoseconds, the Timing and MemoryStats
+ * counts as name=value pairs separated by semicolons and the board in the bit-string
+ * format of BoardRenderer, empty if the solve failed.
+ */
+public class BatchWorker
+{
+    private static SolverProfile profile;
+
+    /**
+     * Solves puzzles until standard input is closed.
+     *
+     * @param args "-permutationCache dir" and "-cacheLimit MiB" to share permutation
+     *             tables with the other workers through the cache directory and
+     *             "-profile file" for the tuned thresholds, SolverProfile.DEFAULT_FILE
+     *             if it exists when none is given.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        String cacheDirectory = null;
+        long cacheLimit = PermutationCache.DEFAULT_LIMIT_BYTES;
+        String profileFile = SolverProfile.DEFAULT_FILE;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-permutationCache" -> cacheDirectory = args[++i];
+                case "-cacheLimit" -> cacheLimit = Long.parseLong(args[++i]) << 20;
+                case "-profile" -> profileFile = args[++i];
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (cacheDirectory != null)
+            PermutationCache.open(cacheDirectory, cacheLimit);
+
+        profile = SolverProfile.load(profileFile);
+
+        BufferedReader br = new BufferedReader(new InputStreamReader(System.in));
+        String fileName;
+
+        while ((fileName = br.readLine()) != null)
+        {
+            if (fileName.isBlank())
+                continue;
+
+            System.out.println(solve(fileName));
+            System.out.flush();
+        }
+    }
+
+    /**
+     * Solves one puzzle and formats its result line. The Timing counts and the
+     * generation stats are reset first so each result only covers its own puzzle.
+     * The solve is timed as the Total phase, which the allocated bytes are counted
+     * over, as Driver.run() does.
+     *
+     * @param fileName The name of the file containing the board size and clues.
+     * @return The result line of the puzzle.
+     */
+    static String solve(String fileName)
+    {
+        Timing.reset();
+        GenerationStatWriter.reset();
+
+        String status;
+        String board = "";
+        long start = System.nanoTime();
+        Timing.timingStart(Timing.Timings.Total);
+
+        try
+        {
+            Driver driver = new Driver();
+            driver.setProfile(profile);
+            GameBoard gBoard = driver.solve(fileName);
+            board = BoardRenderer.renderBits(gBoard);
+            status = Util.boardMatchesClues(gBoard, Util.readFile(fileName)) ? "solved" : "invalid";
+        } catch (ContradictionException e)
+        {
+            System.err.printf("%s: %s%n", fileName, e.getMessage());
+            status = "unsolvable";
+        } catch (IllegalStateException e)
+        {
+            System.err.printf("%s: %s%n", fileName, e.getMessage());
+            status = "stalled";
+        } catch (RuntimeException e)
+        {
+            System.err.printf("%s: %s%n", fileName, e);
+            status = "error";
+        } finally
+        {
+            Timing.timingEnd(Timing.Timings.Total);
+        }
+
+        long time = System.nanoTime() - start;
+        StringBuilder sb = new StringBuilder();
+        LinkedHashMap<String, Long> counts = Timing.getCounts();
+        counts.putAll(MemoryStats.getCounts());
+
+        for (String name : counts.keySet())
+        {
+            if (!sb.isEmpty())
+                sb.append(';');
+            sb.append(name).append('=').append(counts.get(name));
+        }
+
+        return String.join("\t", fileName, status, Long.toString(time), sb.toString(), board);
+    }
+}
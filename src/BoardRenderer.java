@@ -0,0 +1,165 @@
+import java.io.PrintStream;
+
+/**
+ * Renders a game board into a single buffer, so a board is written to the console or
+ * a file in one write instead of one print call per cell.
+ */
+public class BoardRenderer
+{
+    // Constant for the longest line of a plain PBM file.
+    private static final int PBM_LINE_LENGTH = 70;
+
+    /**
+     * Grid is the boxed board printed after a solve, ■ for a filled cell and X for
+     * a blank. Compact is one line per row, # for a filled cell, . for a blank and ?
+     * for an unknown. Pbm is a plain PBM image, filled cells black. Bits is one line
+     * of the board size and the cells row by row, 1 for a filled cell, 0 for a blank
+     * and ? for an unknown, for result files.
+     */
+    public enum Format {Grid, Compact, Pbm, Bits}
+
+    /**
+     * Finds an output format by name, ignoring case.
+     *
+     * @param name The name of the format.
+     * @return The format.
+     * @throws IllegalArgumentException If there is no format with that name.
+     */
+    public static Format parseFormat(String name)
+    {
+        for (Format format : Format.values())
+            if (format.name().equalsIgnoreCase(name))
+                return format;
+
+        throw new IllegalArgumentException("Unknown output format: " + name);
+    }
+
+    /**
+     * Renders a game board and writes it with a single print.
+     *
+     * @param gBoard The game board to print.
+     * @param format The output format.
+     * @param out The stream to write to.
+     */
+    public static void print(GameBoard gBoard, Format format, PrintStream out)
+    {
+        out.print(render(gBoard, format));
+        out.flush();
+    }
+
+    /**
+     * Renders a game board.
+     *
+     * @param gBoard The game board to render.
+     * @param format The output format.
+     * @return The rendered board, ending with a line separator.
+     */
+    public static String render(GameBoard gBoard, Format format)
+    {
+        int width = gBoard.getWidth();
+        int length = gBoard.getLength();
+        StringBuilder sb = new StringBuilder((width * 2 + width / 5 * 2 + 4) * (length + length / 5 + 1));
+
+        switch (format)
+        {
+            case Grid -> renderGrid(gBoard, sb);
+            case Compact -> renderCompact(gBoard, sb);
+            case Pbm -> renderPbm(gBoard, sb);
+            case Bits -> sb.append(renderBits(gBoard)).append(System.lineSeparator());
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Renders a game board as one line with no line separator, the board size then
+     * the cells row by row, for example "5x5:1101000...".
+     *
+     * @param gBoard The game board to render.
+     * @return The rendered board.
+     */
+    public static String renderBits(GameBoard gBoard)
+    {
+        int width = gBoard.getWidth();
+        int length = gBoard.getLength();
+        StringBuilder sb = new StringBuilder(width * length + 16);
+
+        sb.append(width).append('x').append(length).append(':');
+        for (int i = 0; i < length; i++)
+            for (int cell : gBoard.getGBoardRow(i))
+                sb.append(cell == 1 ? '1' : cell == -1 ? '0' : '?');
+
+        return sb.toString();
+    }
+
+    /**
+     * Renders the boxed grid, broken into 5x5 squares by dividing lines.
+     *
+     * @param gBoard The game board to render.
+     * @param sb The buffer to render into.
+     */
+    private static void renderGrid(GameBoard gBoard, StringBuilder sb)
+    {
+        int width = gBoard.getWidth();
+        int length = gBoard.getLength();
+        String divider = " " + "-".repeat(width * 2 + (width / 5) * 2 + 1) + System.lineSeparator();
+
+        for (int i = 0; i < length; i++)
+        {
+            if (i % 5 == 0)
+                sb.append(divider);
+
+            int[] row = gBoard.getGBoardRow(i);
+            for (int j = 0; j < row.length; j++)
+            {
+                if (j % 5 == 0)
+                    sb.append(" |");
+
+                sb.append(' ').append(row[j] == 1 ? '■' : row[j] == 0 ? ' ' : 'X');
+            }
+            sb.append(" |").append(System.lineSeparator());
+        }
+        sb.append(divider);
+    }
+
+    /**
+     * Renders one line of characters per row.
+     *
+     * @param gBoard The game board to render.
+     * @param sb The buffer to render into.
+     */
+    private static void renderCompact(GameBoard gBoard, StringBuilder sb)
+    {
+        for (int i = 0; i < gBoard.getLength(); i++)
+        {
+            for (int cell : gBoard.getGBoardRow(i))
+                sb.append(cell == 1 ? '#' : cell == -1 ? '.' : '?');
+            sb.append(System.lineSeparator());
+        }
+    }
+
+    /**
+     * Renders a plain PBM image, 1 for a filled cell and 0 for a blank or unknown
+     * cell. Rows wider than a PBM line are wrapped.
+     *
+     * @param gBoard The game board to render.
+     * @param sb The buffer to render into.
+     */
+    private static void renderPbm(GameBoard gBoard, StringBuilder sb)
+    {
+        sb.append("P1\n").append(gBoard.getWidth()).append(' ').append(gBoard.getLength()).append('\n');
+
+        for (int i = 0; i < gBoard.getLength(); i++)
+        {
+            int[] row = gBoard.getGBoardRow(i);
+
+            for (int j = 0; j < row.length; j++)
+            {
+                if (j > 0 && j % PBM_LINE_LENGTH == 0)
+                    sb.append('\n');
+                sb.append(row[j] == 1 ? '1' : '0');
+            }
+            sb.append('\n');
+        }
+    }
+}
@@ -0,0 +1,43 @@
+import java.util.concurrent.CancellationException;
+
+/**
+ * A flag used to cooperatively cancel a solve from another thread. The solving loop
+ * and long permutation searches check the token and stop by throwing a
+ * CancellationException once it has been cancelled.
+ */
+public class CancellationToken
+{
+    // A token that is never cancelled, used when a solve can't be cancelled.
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private volatile boolean cancelled = false;
+
+    /**
+     * Cancels the solve using this token.
+     */
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+    /**
+     * Getter for the state of cancelled.
+     *
+     * @return True if the solve using this token should stop.
+     */
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+
+    /**
+     * Stops the solve using this token if it has been cancelled.
+     *
+     * @throws CancellationException If the token has been cancelled.
+     */
+    public void throwIfCancelled()
+    {
+        if (isCancelled())
+            throw new CancellationException("Solve cancelled");
+    }
+}
@@ -0,0 +1,22 @@
+import java.io.Serial;
+
+/**
+ * Thrown when the clues of a puzzle contradict each other or the cells already
+ * solved, so the puzzle has no solution. The message names the row, column or
+ * group where the contradiction was found.
+ */
+public class ContradictionException extends RuntimeException
+{
+    @Serial
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructs a ContradictionException.
+     *
+     * @param message A description of the contradiction and where it was found.
+     */
+    public ContradictionException(String message)
+    {
+        super(message);
+    }
+}
@@ -0,0 +1,166 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Records the convergence of a solve one solving loop iteration at a time: the rows
+ * and columns updated, the groups forced to generate when no line was marked for an
+ * update, the cells gained and the time taken. Written as CSV, or as JSON when the
+ * file name ends in .json, so the slow tail of a solve can be found and scheduling
+ * changes compared on real puzzles.
+ * <p>
+ * A CSV timeline has one row per iteration:
+ * <pre>
+ * iteration,rowsUpdated,columnsUpdated,forcedRow,forcedColumn,cellsGained,knownCells,nanos
+ * </pre>
+ * The forced row and column are the indexes of the row and column on the board, not
+ * their group ids, empty in CSV and null in JSON when no group was forced.
+ */
+public class ConvergenceTimeline
+{
+    private static final String HEADER = "iteration,rowsUpdated,columnsUpdated,forcedRow,forcedColumn,"
+            + "cellsGained,knownCells,nanos";
+
+    private final String fileName;
+    private final ArrayList<long[]> iterations = new ArrayList<>();
+    private String puzzle;
+    private GameBoard gBoard;
+
+    // The iteration being recorded.
+    private long start;
+    private int knownCells;
+    private int rowsUpdated;
+    private int columnsUpdated;
+    private int forcedRow;
+    private int forcedColumn;
+
+    /**
+     * Constructs a ConvergenceTimeline written to a file by write().
+     *
+     * @param fileName The name of the timeline file, JSON if it ends in .json.
+     */
+    public ConvergenceTimeline(String fileName)
+    {
+        this.fileName = fileName;
+    }
+
+    /**
+     * Starts the timeline of a solve, dropping the iterations of any earlier solve.
+     *
+     * @param puzzle The name of the puzzle file.
+     * @param gBoard The game board of the solve.
+     */
+    public void begin(String puzzle, GameBoard gBoard)
+    {
+        this.puzzle = puzzle;
+        this.gBoard = gBoard;
+        iterations.clear();
+    }
+
+    /**
+     * Starts recording an iteration of the solving loop.
+     */
+    public void startIteration()
+    {
+        knownCells = gBoard.getKnownCellCount();
+        rowsUpdated = 0;
+        columnsUpdated = 0;
+        forcedRow = -1;
+        forcedColumn = -1;
+        start = System.nanoTime();
+    }
+
+    /**
+     * Records a group updated from the changes to its line.
+     *
+     * @param groupId The id of the group, rows come before columns.
+     */
+    public void recordUpdate(int groupId)
+    {
+        if (groupId < gBoard.getLength())
+            rowsUpdated++;
+        else
+            columnsUpdated++;
+    }
+
+    /**
+     * Records a group forced to generate its permutations.
+     *
+     * @param groupId The id of the group, rows come before columns.
+     */
+    public void recordForce(int groupId)
+    {
+        if (groupId < gBoard.getLength())
+            forcedRow = groupId;
+        else
+            forcedColumn = groupId - gBoard.getLength();
+    }
+
+    /**
+     * Ends the iteration being recorded and adds it to the timeline.
+     */
+    public void endIteration()
+    {
+        long nanos = System.nanoTime() - start;
+        int known = gBoard.getKnownCellCount();
+
+        iterations.add(new long[] {iterations.size() + 1, rowsUpdated, columnsUpdated, forcedRow, forcedColumn,
+                known - knownCells, known, nanos});
+    }
+
+    /**
+     * Writes the timeline file, replacing any existing file.
+     *
+     * @throws IOException If the file can't be written.
+     */
+    public void write() throws IOException
+    {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(fileName)))
+        {
+            if (fileName.endsWith(".json"))
+                writeJson(pw);
+            else
+                writeCsv(pw);
+        }
+    }
+
+    private void writeCsv(PrintWriter pw)
+    {
+        pw.println(HEADER);
+
+        for (long[] iteration : iterations)
+            pw.printf("%d,%d,%d,%s,%s,%d,%d,%d%n", iteration[0], iteration[1], iteration[2],
+                    iteration[3] < 0 ? "" : iteration[3], iteration[4] < 0 ? "" : iteration[4], iteration[5],
+                    iteration[6], iteration[7]);
+    }
+
+    private void writeJson(PrintWriter pw)
+    {
+        String[] names = HEADER.split(",");
+
+        pw.printf("{\"puzzle\": \"%s\", \"width\": %d, \"length\": %d, \"iterations\": [", escape(puzzle),
+                gBoard == null ? 0 : gBoard.getWidth(), gBoard == null ? 0 : gBoard.getLength());
+
+        for (int i = 0; i < iterations.size(); i++)
+        {
+            long[] iteration = iterations.get(i);
+            pw.print(i == 0 ? "\n  {" : ",\n  {");
+
+            for (int j = 0; j < names.length; j++)
+            {
+                // The forced rows and columns are the only fields that can be missing.
+                boolean missing = (j == 3 || j == 4) && iteration[j] < 0;
+                pw.printf("%s\"%s\": %s", j == 0 ? "" : ", ", names[j], missing ? "null" : iteration[j]);
+            }
+            pw.print('}');
+        }
+
+        pw.println(iterations.isEmpty() ? "]}" : "\n]}");
+    }
+
+    private static String escape(String text)
+    {
+        return text == null ? "" : text.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+}
@@ -0,0 +1,49 @@
+import java.util.List;
+
+/**
+ * A technique for deducing cells of one row or column. Each group runs the strategies
+ * of its solver configuration as a pipeline on every update, keeping the cost and
+ * the cells gained by each strategy so the cheaper deductions can be ordered by how
+ * well they work on that group.
+ */
+public interface DeductionStrategy
+{
+    // The line rules, then generating permutations or reducing the generated ones.
+    List<DeductionStrategy> DEFAULT_PIPELINE = List.of(Deductions.LineRules, Deductions.Generation,
+            Deductions.Permutations);
+
+    /**
+     * Getter for the name of the strategy, used when reporting its statistics.
+     *
+     * @return The name of the strategy.
+     */
+    String getName();
+
+    /**
+     * Exhaustive strategies find every cell that can be deduced from the line, so
+     * they always run after the other strategies and are never skipped.
+     *
+     * @return True if the strategy is exhaustive.
+     */
+    boolean isExhaustive();
+
+    /**
+     * Checks if the strategy can run on a group in its current state.
+     *
+     * @param group The group to update.
+     * @param partial The current partial row/column state.
+     * @return True if the strategy can run.
+     */
+    boolean isApplicable(Group group, int[] partial);
+
+    /**
+     * Deduces cells of a group's line.
+     *
+     * @param group The group to update.
+     * @param partial The current partial row/column state.
+     * @return The partial state with the deduced cells filled in, a new array or a
+     *         buffer of the group that is overwritten by its next deduction, never
+     *         partial itself.
+     */
+    int[] deduce(Group group, int[] partial);
+}
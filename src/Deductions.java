@@ -0,0 +1,96 @@
+/**
+ * The built-in deduction strategies of a group.
+ */
+public enum Deductions implements DeductionStrategy
+{
+    /**
+     * Simple boxes, simple spaces, gap elimination and clue matching from the
+     * leftmost and rightmost placements of the clues, see Group.deduceLinePatterns().
+     */
+    LineRules
+    {
+        @Override
+        public boolean isExhaustive()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isApplicable(Group group, int[] partial)
+        {
+            return !group.getPermutationsGenerated();
+        }
+
+        @Override
+        public int[] deduce(Group group, int[] partial)
+        {
+            Timing.timingStart(Timing.Timings.EdgePattern);
+            int[] result = group.deduceLinePatterns(partial);
+            Timing.timingEnd(Timing.Timings.EdgePattern);
+
+            return result;
+        }
+    },
+
+    /**
+     * Generates the permutations consistent with the partial solution, once a high
+     * permutation group has passed its generation threshold.
+     */
+    Generation
+    {
+        @Override
+        public boolean isExhaustive()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isApplicable(Group group, int[] partial)
+        {
+            return !group.getPermutationsGenerated()
+                    && (!group.isHighPermutationGroup() || group.isReadyToGenerate(partial));
+        }
+
+        @Override
+        public int[] deduce(Group group, int[] partial)
+        {
+            group.generatePermutations(partial, "Generation");
+
+            return Permutations.deduce(group, partial);
+        }
+    },
+
+    /**
+     * The cells shared by every valid permutation of a group that has generated.
+     */
+    Permutations
+    {
+        @Override
+        public boolean isExhaustive()
+        {
+            return true;
+        }
+
+        @Override
+        public boolean isApplicable(Group group, int[] partial)
+        {
+            return group.getPermutationsGenerated();
+        }
+
+        @Override
+        public int[] deduce(Group group, int[] partial)
+        {
+            Timing.timingStart(Timing.Timings.ConsistentPattern);
+            int[] result = group.generateConsistentPattern(partial);
+            Timing.timingEnd(Timing.Timings.ConsistentPattern);
+
+            return result;
+        }
+    };
+
+    @Override
+    public String getName()
+    {
+        return name();
+    }
+}
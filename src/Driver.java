@@ -1,4 +1,6 @@
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.concurrent.CancellationException;
 
 /**
  * Main driver class for solving Nonogram puzzles.
@@ -12,30 +14,264 @@ public class Driver
     ArrayList<int[]> fileContents = new ArrayList<>();
     int width, length;
     GameBoard gBoard;
-    long rowSizeBits, columnSizeBits;
+    // Reused to read each column of the game board.
+    private int[] columnBuffer;
+    private final SolverConfig config;
+    private final CancellationToken token;
+    private ProgressReporter reporter;
+    private SolveTrace trace;
+    private ConvergenceTimeline timeline;
+    private BoardRenderer.Format format = BoardRenderer.Format.Grid;
+    private long timeLimitNanos = 0L;
+    private int iterationLimit = 0;
+    private SolveBudget budget;
+    private boolean budgetExhausted = false;
+    private SolverProfile profile;
 
     /**
      * Starting point of the program, just calls the run method which
-     * handles calling all the steps needed for the solver.
+     * handles calling all the steps needed for the solver. Progress of the
+     * solve can be watched with "-progress seconds" for a periodic progress
+     * log and "-metricsPort port" for a local Prometheus endpoint. "-offHeap"
+     * keeps the permutations of high permutation groups off the heap,
+     * "-trace file" records every group operation for TraceReplay,
+     * "-timeline file" writes the cells gained and time of every iteration of the
+     * solving loop as CSV, or as JSON if the file name ends in .json,
+     * "-format grid|compact|pbm|bits" chooses how the solved board is printed and
+     * "-timeLimit ms" and "-iterationLimit n" set the budget of the solve. A solve
+     * that runs out of its budget prints the partial board and exits with status 2.
+     * "-permutationCache dir" keeps permutation tables on disk between runs, capped
+     * at "-cacheLimit MiB". The tuned thresholds of the ThresholdCalibrator are
+     * loaded from "-profile file", or from SolverProfile.DEFAULT_FILE if it exists,
+     * and "-noProfile" solves with the built-in thresholds.
      *
      * @param args Command line arguments passed when program is run.
      */
-    public static void main(String[] args)
+    public static void main(String[] args) throws IOException
     {
-        new Driver().run();
+        ProgressReporter reporter = null;
+        SolverConfig config = SolverConfig.DEFAULT;
+        SolveTrace trace = null;
+        ConvergenceTimeline timeline = null;
+        BoardRenderer.Format format = BoardRenderer.Format.Grid;
+        long timeLimitMillis = 0L;
+        int iterationLimit = 0;
+        String cacheDirectory = null;
+        long cacheLimit = PermutationCache.DEFAULT_LIMIT_BYTES;
+        String profileFile = SolverProfile.DEFAULT_FILE;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-progress" ->
+                {
+                    reporter = reporter == null ? new ProgressReporter() : reporter;
+                    reporter.startLog(Long.parseLong(args[++i]));
+                }
+                case "-metricsPort" ->
+                {
+                    reporter = reporter == null ? new ProgressReporter() : reporter;
+                    reporter.startServer(Integer.parseInt(args[++i]));
+                }
+                case "-offHeap" -> config = new SolverConfig("off-heap", SolverConfig.Strategy.LineSolving,
+                        SolverConfig.PERMUTATION_LIMIT, SolverConfig.GENERATION_THRESHOLD,
+                        DeductionStrategy.DEFAULT_PIPELINE, true);
+                case "-trace" -> trace = new SolveTrace(args[++i]);
+                case "-timeline" -> timeline = new ConvergenceTimeline(args[++i]);
+                case "-format" -> format = BoardRenderer.parseFormat(args[++i]);
+                case "-timeLimit" -> timeLimitMillis = Long.parseLong(args[++i]);
+                case "-iterationLimit" -> iterationLimit = Integer.parseInt(args[++i]);
+                case "-permutationCache" -> cacheDirectory = args[++i];
+                case "-cacheLimit" -> cacheLimit = Long.parseLong(args[++i]) << 20;
+                case "-profile" -> profileFile = args[++i];
+                case "-noProfile" -> profileFile = null;
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (cacheDirectory != null)
+            PermutationCache.open(cacheDirectory, cacheLimit);
+
+        Driver driver = new Driver(config, CancellationToken.NONE);
+        driver.setProgressReporter(reporter);
+        driver.setTrace(trace);
+        driver.setTimeline(timeline);
+        driver.setOutputFormat(format);
+        driver.setBudget(timeLimitMillis * 1_000_000L, iterationLimit);
+        if (profileFile != null)
+        {
+            SolverProfile profile = SolverProfile.load(profileFile);
+            if (profile == null && !profileFile.equals(SolverProfile.DEFAULT_FILE))
+                throw new IllegalArgumentException("No solver profile: " + profileFile);
+            driver.setProfile(profile);
+        }
+
+        // The exit waits for the finally block, so the trace and timeline of a failed
+        // solve are still written, they show where the solve stalled.
+        int status = 0;
+        try
+        {
+            driver.run();
+        } catch (ContradictionException e)
+        {
+            System.err.println("Puzzle has no solution: " + e.getMessage());
+            status = 1;
+        } catch (IllegalStateException e)
+        {
+            System.err.println("Puzzle could not be solved: " + e.getMessage());
+            status = 1;
+        } finally
+        {
+            if (reporter != null)
+                reporter.stop();
+            if (trace != null)
+                trace.close();
+            if (timeline != null)
+                timeline.write();
+        }
+
+        if (status == 0 && driver.isBudgetExhausted())
+            status = 2;
+        if (status != 0)
+            System.exit(status);
+    }
+
+    /**
+     * Constructs a Driver using the default solver configuration, that can't be cancelled.
+     */
+    public Driver()
+    {
+        this(SolverConfig.DEFAULT, CancellationToken.NONE);
+    }
+
+    /**
+     * Constructs a Driver using a solver configuration. The solve stops with a
+     * CancellationException once the cancellation token is cancelled.
+     *
+     * @param config The solver configuration used by the groups.
+     * @param token The token checked every iteration of the solving loop.
+     */
+    public Driver(SolverConfig config, CancellationToken token)
+    {
+        this.config = config;
+        this.token = token;
+    }
+
+    /**
+     * Sets the reporter that is sent the progress of the solve after every iteration.
+     *
+     * @param reporter The progress reporter, or null for no progress reporting.
+     */
+    public void setProgressReporter(ProgressReporter reporter)
+    {
+        this.reporter = reporter;
+    }
+
+    /**
+     * Sets the trace that every group operation of the solve is recorded to.
+     *
+     * @param trace The solve trace, or null for no tracing.
+     */
+    public void setTrace(SolveTrace trace)
+    {
+        this.trace = trace;
+    }
+
+    /**
+     * Sets the timeline that every iteration of the solving loop is recorded to.
+     *
+     * @param timeline The convergence timeline, or null for no timeline.
+     */
+    public void setTimeline(ConvergenceTimeline timeline)
+    {
+        this.timeline = timeline;
+    }
+
+    /**
+     * Sets the format the solved board is printed in by run().
+     *
+     * @param format The output format.
+     */
+    public void setOutputFormat(BoardRenderer.Format format)
+    {
+        this.format = format;
+    }
+
+    /**
+     * Sets the budget of each solve. The time budget starts when solve() is called and
+     * is checked every iteration of the solving loop and during long permutation
+     * searches. A solve that runs out of its budget returns the partially solved board.
+     *
+     * @param timeLimitNanos The time a solve may take in nanoseconds, 0 for no limit.
+     * @param iterationLimit The iterations of the solving loop a solve may take, 0 for no limit.
+     */
+    public void setBudget(long timeLimitNanos, int iterationLimit)
+    {
+        this.timeLimitNanos = timeLimitNanos;
+        this.iterationLimit = iterationLimit;
+    }
+
+    /**
+     * Sets the tuned profile the thresholds of each solve are taken from. The base
+     * configuration of the driver is tuned to the class of each puzzle.
+     *
+     * @param profile The solver profile, or null to use the thresholds of the configuration.
+     */
+    public void setProfile(SolverProfile profile)
+    {
+        this.profile = profile;
+    }
+
+    /**
+     * Checks if the last solve stopped because it ran out of its time or iteration
+     * budget, in which case the board it returned is only partially solved.
+     *
+     * @return True if the last solve ran out of its budget.
+     */
+    public boolean isBudgetExhausted()
+    {
+        return budgetExhausted;
     }
 
     /**
-     * Method that runs the solver. Calls the necessary methods in sequence to
-     * get the filename of the board size and clue, initializes of group objects,
-     * perform solving of the board and print board when solved. Numerous timing
-     * points are used in this method to track performance of the program.
+     * Method that runs the solver. Gets the filename of the board size and clues,
+     * solves the board and prints it when solved. The timings of the solve are
+     * saved to a file at the end.
      */
     public void run()
     {
         String fileName = Util.getFileName();
         Timing.timingStart(Timing.Timings.Total);
 
+        solve(fileName);
+
+        BoardRenderer.print(gBoard, format, System.out);
+        if (budgetExhausted)
+            System.err.printf("Budget exhausted, %.2f%% of the cells are known%n",
+                    gBoard.getKnownCellCount() * 100.0 / (width * length));
+        Timing.timingEnd(Timing.Timings.Total);
+        Timing.saveTimings();
+        GenerationStatWriter.writeToFile();
+    }
+
+    /**
+     * Solves the board in a file. Calls the necessary methods in sequence to read
+     * the board size and clues, initialize the group objects and perform solving of
+     * the board. Numerous timing points are used in this method to track performance
+     * of the program.
+     *
+     * @param fileName The name of the file containing the board size and clues.
+     * @return The solved game board, only partially solved if the solve ran out of its
+     *         budget, see isBudgetExhausted().
+     * @throws ContradictionException If the clues contradict each other.
+     * @throws IllegalStateException If line solving stalls before the board is solved.
+     */
+    public GameBoard solve(String fileName)
+    {
+        budget = new SolveBudget(token, timeLimitNanos, iterationLimit);
+        budgetExhausted = false;
+
         Timing.timingStart(Timing.Timings.FileReading);
         fileContents = Util.readFile(fileName);
         Timing.timingEnd(Timing.Timings.FileReading);
@@ -48,18 +284,59 @@ public class Driver
         applyOverlap();
         Timing.timingEnd(Timing.Timings.Overlap);
 
+        if (timeline != null)
+            timeline.begin(fileName, gBoard);
+
         Timing.timingStart(Timing.Timings.SolvingLoop);
-        while (!gBoard.isSolved())
+        int iterations = 0;
+        try
+        {
+            while (!gBoard.isSolved())
+            {
+                if (reporter != null)
+                    reporter.update(gBoard, groups, iterations);
+
+                if (budget.isIterationLimitReached(iterations))
+                {
+                    budgetExhausted = true;
+                    break;
+                }
+
+                budget.throwIfCancelled();
+                if (timeline != null)
+                    timeline.startIteration();
+                if (!updateGameBoard())
+                    throw new IllegalStateException("No more cells can be solved by line solving, "
+                            + "the puzzle may have more than one solution");
+                if (timeline != null)
+                    timeline.endIteration();
+                Timing.addIteration();
+                iterations++;
+            }
+
+            if (reporter != null)
+                reporter.update(gBoard, groups, iterations);
+        } catch (CancellationException e)
         {
-            updateGameBoard();
-            Timing.addIteration();
+            // A solve that runs out of time keeps the cells solved so far, the board is
+            // only set from whole group results. A cancelled solve has no result.
+            if (token.isCancelled() || !budget.isTimeExhausted())
+                throw e;
+            budgetExhausted = true;
+        } finally
+        {
+            // Off-heap permutations are dropped at the end of the solve, however it ends,
+            // their direct memory is freed by the next garbage collection.
+            for (Group group : groups)
+            {
+                MemoryStats.addGroup(group);
+                group.releasePermutations();
+            }
         }
         Timing.timingEnd(Timing.Timings.SolvingLoop);
+        Timing.setBoardProgress(gBoard, budgetExhausted);
 
-        printGameBoard();
-        Timing.timingEnd(Timing.Timings.Total);
-        Timing.saveTimings();
-        GenerationStatWriter.writeToFile();
+        return gBoard;
     }
 
     /**
@@ -75,11 +352,31 @@ public class Driver
         width = gridSize[0];
         length = gridSize[1];
 
-        rowSizeBits = (long)Math.pow(2,width);
-        columnSizeBits = (long)Math.pow(2, length);
-
+        if (fileContents.size() != width + length + 1)
+            throw new ContradictionException(String.format("A %dx%d grid needs %d clue lines but the file has %d",
+                    width, length, width + length, fileContents.size() - 1));
+
+        // Every filled cell is counted once by its row and once by its column.
+        long rowTotal = 0;
+        long columnTotal = 0;
+        for (int i = 1; i <= length; i++)
+            for (int clue : fileContents.get(i))
+                rowTotal += clue;
+        for (int i = length + 1; i < fileContents.size(); i++)
+            for (int clue : fileContents.get(i))
+                columnTotal += clue;
+
+        if (rowTotal != columnTotal)
+            throw new ContradictionException(String.format("Row clues fill %d cells but column clues fill %d",
+                    rowTotal, columnTotal));
+
+        SolverConfig config = profile == null ? this.config : profile.configFor(width, length, this.config);
         gBoard = new GameBoard(width, length);
         groups = new Group[width + length];
+        columnBuffer = new int[length];
+
+        if (trace != null)
+            trace.recordConfig(config);
 
         int[] rowClues;
         int[] columnClues;
@@ -88,14 +385,18 @@ public class Driver
         for (int i = 0; i < length; i++)
         {
             rowClues = fileContents.get(i + 1);
-            groups[i] = new Group(rowClues, width, i, rowSizeBits);
+            groups[i] = new Group(rowClues, width, i, config, budget);
+            if (trace != null)
+                trace.recordGroup(i, width, rowClues);
         }
 
         // Creating group objects for all the columns.
         for (int i = length; i < groups.length; i++)
         {
             columnClues = fileContents.get(i + 1);
-            groups[i] = new Group(columnClues, length, i, columnSizeBits);
+            groups[i] = new Group(columnClues, length, i, config, budget);
+            if (trace != null)
+                trace.recordGroup(i, length, columnClues);
         }
     }
 
@@ -113,6 +414,8 @@ public class Driver
         for (int i = 0; i < length; i++)
         {
             rowOverlap = groups[i].overlap();
+            if (trace != null)
+                trace.recordOverlap(i, rowOverlap);
             gBoard.setGBoardRow(rowOverlap, i);
         }
 
@@ -121,6 +424,8 @@ public class Driver
         for (int i = 0; i < width; i++)
         {
             columnOverlap = groups[i + length].overlap();
+            if (trace != null)
+                trace.recordOverlap(i + length, columnOverlap);
             gBoard.setGBoardColumn(columnOverlap, i);
         }
     }
@@ -129,9 +434,12 @@ public class Driver
      * Performs one full iteration of the solving loop. Updates rows and columns
      * that have new solved cells since their last update. If no rows or columns
      * are marked for update, a low-cost group is forced to generate permutations.
+     *
+     * @return False if no group was updated or generated, so the solve has stalled.
      */
-    private void updateGameBoard()
+    private boolean updateGameBoard()
     {
+        boolean progress = false;
         boolean rowsUnchanged = true;
         boolean columnsUnchanged = true;
 
@@ -155,8 +463,14 @@ public class Driver
             Group row = lowCostGroup(0, length);
             if (row != null)
             {
+                progress = true;
                 rowPartialSolution = gBoard.getGBoardRow(row.getGroupId());
                 rowUpdatedSolution = row.forceGeneration(rowPartialSolution);
+                if (trace != null)
+                    trace.recordForce(row.getGroupId(), rowPartialSolution, rowUpdatedSolution,
+                            row.getLastStrategy());
+                if (timeline != null)
+                    timeline.recordForce(row.getGroupId());
                 gBoard.setGBoardRow(rowUpdatedSolution, row.getGroupId());
             }
         }
@@ -168,7 +482,13 @@ public class Driver
                 if (gBoard.getRowsToUpdate()[i] == 1)
                 {
                     rowPartialSolution = gBoard.getGBoardRow(i);
-                    rowUpdatedSolution = groups[i].updateGroup(rowPartialSolution);
+                    rowUpdatedSolution = groups[i].updateGroup(rowPartialSolution,
+                            gBoard.getRowFilledChanges(i), gBoard.getRowBlankChanges(i));
+                    if (trace != null)
+                        trace.recordUpdate(i, rowPartialSolution, gBoard.getRowFilledChanges(i),
+                                gBoard.getRowBlankChanges(i), rowUpdatedSolution, groups[i].getLastStrategy());
+                    if (timeline != null)
+                        timeline.recordUpdate(i);
                     gBoard.setGBoardRow(rowUpdatedSolution, i);
                 }
             }
@@ -191,8 +511,14 @@ public class Driver
             Group column = lowCostGroup(length, width + length);
             if (column != null)
             {
-                columnPartialSolution = gBoard.getGBoardColumn(column.getGroupId() - length, length);
+                progress = true;
+                columnPartialSolution = gBoard.getGBoardColumn(column.getGroupId() - length, columnBuffer);
                 columnUpdatedSolution = column.forceGeneration(columnPartialSolution);
+                if (trace != null)
+                    trace.recordForce(column.getGroupId(), columnPartialSolution, columnUpdatedSolution,
+                            column.getLastStrategy());
+                if (timeline != null)
+                    timeline.recordForce(column.getGroupId());
                 gBoard.setGBoardColumn(columnUpdatedSolution, column.getGroupId() - length);
             }
         }
@@ -203,14 +529,23 @@ public class Driver
             {
                 if (gBoard.getColumnsToUpdate()[i] == 1)
                 {
-                    columnPartialSolution = gBoard.getGBoardColumn(i, length);
-                    columnUpdatedSolution = groups[i + length].updateGroup(columnPartialSolution);
+                    columnPartialSolution = gBoard.getGBoardColumn(i, columnBuffer);
+                    columnUpdatedSolution = groups[i + length].updateGroup(columnPartialSolution,
+                            gBoard.getColumnFilledChanges(i), gBoard.getColumnBlankChanges(i));
+                    if (trace != null)
+                        trace.recordUpdate(i + length, columnPartialSolution, gBoard.getColumnFilledChanges(i),
+                                gBoard.getColumnBlankChanges(i), columnUpdatedSolution,
+                                groups[i + length].getLastStrategy());
+                    if (timeline != null)
+                        timeline.recordUpdate(i + length);
                     gBoard.setGBoardColumn(columnUpdatedSolution, i);
                 }
             }
         // Clearing the marked columns for update, new any row updates will prompt an update
         // to the corresponding intersecting column.
         gBoard.resetColumnsToUpdate();
+
+        return progress || !rowsUnchanged || !columnsUnchanged;
     }
 
     /**
@@ -248,38 +583,14 @@ public class Driver
     }
 
     /**
-     * A method for printing out the game board to the console. Will print a ■ for
-     * filled square and an x represents a blank square.
+     * A method for printing out a game board to the console. Will print a ■ for
+     * filled square and an x represents a blank square. The board is rendered into
+     * one buffer and printed at once, see BoardRenderer.
+     *
+     * @param gBoard The game board to print.
      */
-    private void printGameBoard()
+    public static void printGameBoard(GameBoard gBoard)
     {
-        char printChar;
-
-        // Looping through each row of the game board.
-        for (int i = 0; i < length; i++)
-        {
-            // Printing horizontal dividing line, breaking game board into 5x5 squares.
-            if (i % 5 == 0)
-                System.out.println(" " + "-".repeat(width * 2 + (width/5) * 2 + 1));
-
-            // Looping through each cell of a row on the game board.
-            for (int j = 0; j < gBoard.getGBoardRow(i).length; j++)
-            {
-                // Printing vertical dividing line, breaking game board into 5x5 squares.
-                if (j % 5 == 0)
-                    System.out.print(" |");
-
-                if (gBoard.getGBoardRow(i)[j] == 1)
-                    printChar = '■';
-                else if (gBoard.getGBoardRow(i)[j] == 0)
-                    printChar = ' ';
-                else
-                    printChar = 'X';
-
-                System.out.print(" " + printChar);
-            }
-            System.out.println(" |");
-        }
-        System.out.println(" " + "-".repeat(width * 2 + (width/5) * 2 + 1));
+        BoardRenderer.print(gBoard, BoardRenderer.Format.Grid, System.out);
     }
 }
\ No newline at end of file
@@ -5,7 +5,11 @@ public class GameBoard {
     private final int[][] gBoard;
     private final int[] rowsToUpdate;
     private final int[] columnsToUpdate;
-
+    // The cells of each line set since the line was last updated, bit i is cell i.
+    private final long[] rowFilledChanges;
+    private final long[] rowBlankChanges;
+    private final long[] columnFilledChanges;
+    private final long[] columnBlankChanges;
 
     /**
      * A constructor for a game board of a specified length and width.
@@ -17,6 +21,29 @@ public class GameBoard {
         gBoard = new int[length][width];
         rowsToUpdate = new int[length];
         columnsToUpdate = new int[width];
+        rowFilledChanges = new long[length];
+        rowBlankChanges = new long[length];
+        columnFilledChanges = new long[width];
+        columnBlankChanges = new long[width];
+    }
+
+    /**
+     * A constructor for a copy of another game board, including the
+     * rows and columns marked to be updated and their changed cells.
+     * @param other the game board to copy
+     */
+    public GameBoard(GameBoard other)
+    {
+        gBoard = new int[other.gBoard.length][];
+        for (int i = 0; i < gBoard.length; i++)
+            gBoard[i] = Arrays.copyOf(other.gBoard[i], other.gBoard[i].length);
+
+        rowsToUpdate = Arrays.copyOf(other.rowsToUpdate, other.rowsToUpdate.length);
+        columnsToUpdate = Arrays.copyOf(other.columnsToUpdate, other.columnsToUpdate.length);
+        rowFilledChanges = Arrays.copyOf(other.rowFilledChanges, other.rowFilledChanges.length);
+        rowBlankChanges = Arrays.copyOf(other.rowBlankChanges, other.rowBlankChanges.length);
+        columnFilledChanges = Arrays.copyOf(other.columnFilledChanges, other.columnFilledChanges.length);
+        columnBlankChanges = Arrays.copyOf(other.columnBlankChanges, other.columnBlankChanges.length);
     }
 
     /**
@@ -31,7 +58,8 @@ public class GameBoard {
 
     /**
      * A method for setting the values of the int[] of
-     * a specified row of gBoard.
+     * a specified row of gBoard. Throws a ContradictionException
+     * if a solved cell would be changed.
      * @param arr the int[] of values to set for the specified row
      * @param row the number of row to be set
      */
@@ -40,8 +68,17 @@ public class GameBoard {
         for (int i = 0; i < arr.length; i++)
             if (arr[i] != 0 && arr[i] != gBoard[row][i])
             {
+                if (gBoard[row][i] != 0)
+                    throw new ContradictionException(String.format("Row %d: cell %d is already %s", row, i,
+                            gBoard[row][i] == 1 ? "filled" : "blank"));
+
                 gBoard[row][i] = arr[i];
                 columnsToUpdate[i] = 1;
+
+                if (arr[i] == 1)
+                    columnFilledChanges[i] |= 1L << row;
+                else
+                    columnBlankChanges[i] |= 1L << row;
             }
     }
 
@@ -53,8 +90,18 @@ public class GameBoard {
      */
     public int[] getGBoardColumn(int column, int length)
     {
-        int[] output = new int[length];
+        return getGBoardColumn(column, new int[length]);
+    }
 
+    /**
+     * A method for copying a specified column of gBoard into an
+     * existing int[], so a column can be read without allocating.
+     * @param column the column of gBoard to be copied
+     * @param output the int[] to copy into, one entry per row
+     * @return output holding the specified column of gBoard
+     */
+    public int[] getGBoardColumn(int column, int[] output)
+    {
         for (int i = 0; i < output.length; i++)
             output[i] = gBoard[i][column];
 
@@ -63,7 +110,8 @@ public class GameBoard {
 
     /**
      * A method for setting the values of the int[] that
-     * represents a specified column of gBoard.
+     * represents a specified column of gBoard. Throws a
+     * ContradictionException if a solved cell would be changed.
      * @param arr the int[] of values to set for the specified column
      * @param column the number of column to be set
      */
@@ -72,11 +120,45 @@ public class GameBoard {
         for (int i = 0; i < arr.length; i++)
             if (arr[i] != 0 && arr[i] != gBoard[i][column])
             {
+                if (gBoard[i][column] != 0)
+                    throw new ContradictionException(String.format("Column %d: cell %d is already %s", column, i,
+                            gBoard[i][column] == 1 ? "filled" : "blank"));
+
                 gBoard[i][column] = arr[i];
                 rowsToUpdate[i] = 1;
+
+                if (arr[i] == 1)
+                    rowFilledChanges[i] |= 1L << column;
+                else
+                    rowBlankChanges[i] |= 1L << column;
             }
     }
 
+    /**
+     * A method for setting a single cell of gBoard, marking both the
+     * row and the column of the cell to be updated with the cell changed.
+     * @param row the row of the cell
+     * @param column the column of the cell
+     * @param value the value to set the cell to
+     */
+    public void setCell(int row, int column, int value)
+    {
+        gBoard[row][column] = value;
+        rowsToUpdate[row] = 1;
+        columnsToUpdate[column] = 1;
+
+        if (value == 1)
+        {
+            rowFilledChanges[row] |= 1L << column;
+            columnFilledChanges[column] |= 1L << row;
+        }
+        else
+        {
+            rowBlankChanges[row] |= 1L << column;
+            columnBlankChanges[column] |= 1L << row;
+        }
+    }
+
     /**
      * A method for determining if the game board is in a solved state.
      * The game board is considered in a solved state if there are no 0s
@@ -96,6 +178,41 @@ public class GameBoard {
         return true;
     }
 
+    /**
+     * A method for counting the cells of the game board that are known,
+     * either filled or blank.
+     * @return the number of cells that aren't 0
+     */
+    public int getKnownCellCount()
+    {
+        int known = 0;
+
+        for (int[] row : gBoard)
+            for (int cell : row)
+                if (cell != 0)
+                    known++;
+
+        return known;
+    }
+
+    /**
+     * A method for returning the width of the game board.
+     * @return the number of cells in each row
+     */
+    public int getWidth()
+    {
+        return gBoard[0].length;
+    }
+
+    /**
+     * A method for returning the length of the game board.
+     * @return the number of rows
+     */
+    public int getLength()
+    {
+        return gBoard.length;
+    }
+
     public int[] getRowsToUpdate()
     {
         return rowsToUpdate;
@@ -104,6 +221,8 @@ public class GameBoard {
     public void resetRowsToUpdate()
     {
         Arrays.fill(rowsToUpdate, 0);
+        Arrays.fill(rowFilledChanges, 0L);
+        Arrays.fill(rowBlankChanges, 0L);
     }
 
     public int[] getColumnsToUpdate()
@@ -114,5 +233,51 @@ public class GameBoard {
     public void resetColumnsToUpdate()
     {
         Arrays.fill(columnsToUpdate, 0);
+        Arrays.fill(columnFilledChanges, 0L);
+        Arrays.fill(columnBlankChanges, 0L);
+    }
+
+    /**
+     * A method for returning the cells of a row set to filled by the columns
+     * since the row was last updated.
+     * @param row the row of gBoard
+     * @return the changed cells, bit i is the cell in column i
+     */
+    public long getRowFilledChanges(int row)
+    {
+        return rowFilledChanges[row];
+    }
+
+    /**
+     * A method for returning the cells of a row set to blank by the columns
+     * since the row was last updated.
+     * @param row the row of gBoard
+     * @return the changed cells, bit i is the cell in column i
+     */
+    public long getRowBlankChanges(int row)
+    {
+        return rowBlankChanges[row];
+    }
+
+    /**
+     * A method for returning the cells of a column set to filled by the rows
+     * since the column was last updated.
+     * @param column the column of gBoard
+     * @return the changed cells, bit i is the cell in row i
+     */
+    public long getColumnFilledChanges(int column)
+    {
+        return columnFilledChanges[column];
+    }
+
+    /**
+     * A method for returning the cells of a column set to blank by the rows
+     * since the column was last updated.
+     * @param column the column of gBoard
+     * @return the changed cells, bit i is the cell in row i
+     */
+    public long getColumnBlankChanges(int column)
+    {
+        return columnBlankChanges[column];
     }
 }
\ No newline at end of file
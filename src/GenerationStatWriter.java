@@ -1,23 +1,45 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 public class GenerationStatWriter
 {
-    private static String generationStats = "";
-    public static void writeToFile()
+    // The reason, group, maximum and stored permutations of each generation, only
+    // formatted when the file is written so that generating doesn't build strings.
+    private static final ArrayList<String> reasons = new ArrayList<>();
+    private static int[] counts = new int[3 * 64];
+
+    public static synchronized void writeToFile()
     {
         try (PrintWriter pw = new PrintWriter(new FileWriter("Generation Stats.txt")))
         {
-            pw.print(generationStats);
+            for (int i = 0; i < reasons.size(); i++)
+                pw.printf("%16s: Group %2d: Max Permutations: %,10d Stored Permutations: %,10d%n", reasons.get(i),
+                        counts[3 * i], counts[3 * i + 1], counts[3 * i + 2]);
         }catch (IOException e)
         {
             throw new RuntimeException(e);
         }
     }
 
-    public static void addGenerationStats(String generationStats)
+    public static synchronized void addGenerationStats(String reason, int groupId, int maxPermutations,
+                                                       int storedPermutations)
+    {
+        int index = 3 * reasons.size();
+
+        if (index + 3 > counts.length)
+            counts = Arrays.copyOf(counts, counts.length * 2);
+
+        reasons.add(reason);
+        counts[index] = groupId;
+        counts[index + 1] = maxPermutations;
+        counts[index + 2] = storedPermutations;
+    }
+
+    public static synchronized void reset()
     {
-        GenerationStatWriter.generationStats += generationStats;
+        reasons.clear();
     }
 }
@@ -1,35 +1,86 @@
+import java.nio.LongBuffer;
 import java.util.Arrays;
-import java.util.BitSet;
+import java.util.List;
+import java.util.stream.IntStream;
 
 /**
  * Represents a single row or column group in a Nonogram puzzle.
  * Handles clue interpretation, permutation generation, filtering, and deduction logic.
- * Supports edge pattern deduction, permutation-based filtering, and consistent cell detection.
+ * Supports line rule deduction, permutation-based filtering, and consistent cell detection.
  */
 public class Group
 {
-    // Constant that determines if a group is a high permutation group.
-    private static final int PERMUTATION_LIMIT = 250000;
-    // Constant that sets the solution fill threshold before generation.
-    private static final double GENERATION_THRESHOLD = 0.2;
+    // Constant that sets the starting size of a segment filled by a parallel search.
+    private static final int SEGMENT_SIZE = 4096;
+    // Constant for the words of the cell index transposed by one parallel task.
+    private static final int INDEX_CHUNK_WORDS = 1024;
+    // Constant for the missed runs before a deduction strategy is skipped.
+    private static final int SKIP_AFTER_MISSES = 4;
+    // Constant for the average call time below which a deduction strategy is never skipped.
+    private static final long SKIP_MIN_NANOS = 10_000_000;
 
     private final int[] clues;
     private final int size;
     private final int groupId;
+    private final SolverConfig config;
+    private final CancellationToken token;
     private final boolean isHighPermutations;
-    private Long[] permutations;
-    private final long sizeBits;
+    private long[] permutations;
+    // Used in place of permutations by high permutation groups when the solver
+    // configuration stores permutations off the heap.
+    private OffHeapPermutations offHeapPermutations;
+    // Used in place of permutations by high permutation groups kept on the heap. A
+    // cell-major index, bit j of word w of cellIndex[c] is set when permutation
+    // 64w + j fills cell c.
+    private long[][] cellIndex;
+    private final int[] minStart;
+    private final int[] maxStart;
+    private final int[] placementOrder;
+    private final long[] clueBits;
+    private final long[] lowBits;
+    private final int[] leftStart;
+    private final int[] rightStart;
+    // The first and last start of each clue searched by a generation, its leftmost and
+    // rightmost placements on the cells known when the generation started.
+    private final int[] searchFirst;
+    private final int[] searchLast;
+    private final long[] failedStarts;
+    private final PermutationSearch search;
+    private int anchorClue = 0;
+    // The line returned by the deductions of this group, overwritten by each update
+    // so that updating a group allocates nothing. The buffer belongs to the group
+    // rather than to the caller so DeductionStrategy and the Driver, SolutionCounter
+    // and TraceReplay loops keep their signatures. A group is only updated by one
+    // thread at a time, the parallel searches of a generation never write it, so one
+    // buffer per group is as safe as one per thread. The caller copies the result
+    // into its board before the next update of the group, and never passes the buffer
+    // back in as the partial line, see checkPartial().
+    private final int[] deducedLine;
+
+    // Statistics of each strategy of the deduction pipeline on this group, and the
+    // order the strategies are tried in.
+    private final List<DeductionStrategy> strategies;
+    private final long[] strategyCalls;
+    private final long[] strategyNanos;
+    private final long[] strategyCells;
+    private final int[] strategyMisses;
+    private final int[] strategySkips;
+    private final int[] strategyOrder;
+    private String lastStrategy = "None";
 
     private boolean permutationsGenerated = false;
     private int maxPermutationCount = 0;
-    private int filteredPermutationCount = 0;
     private int permutationCount = 0;
 
     private long partialBits = 0L;
     private long maskBits = 0L;
-    private BitSet validMask;
-
-    enum Direction {Start, End}
+    // Bit j of word w is set while permutation 64w + j is consistent with the partial solution.
+    private long[] validMask;
+    // The cells filled in every valid permutation, the cells filled in any of them and
+    // the number of valid permutations, kept up to date as permutations are filtered out.
+    private long survivorAnd = -1L;
+    private long survivorOr = 0L;
+    private int survivorCount = 0;
 
     /**
      * Constructs a Group with given clues, total length, and unique ID.
@@ -39,21 +90,94 @@ public class Group
      * @param size The number of cells in this group.
      * @param groupId A unique identifier for logging or referencing.
      */
-    public Group(int[] clues, int size, int groupId, long sizeBits)
+    public Group(int[] clues, int size, int groupId)
+    {
+        this(clues, size, groupId, SolverConfig.DEFAULT, CancellationToken.NONE);
+    }
+
+    /**
+     * Constructs a Group with given clues, total length, and unique ID, using the
+     * thresholds of a solver configuration. Permutation searches stop once the
+     * cancellation token is cancelled.
+     *
+     * @param clues The clue sequence for this group.
+     * @param size The number of cells in this group.
+     * @param groupId A unique identifier for logging or referencing.
+     * @param config The solver configuration with the generation thresholds.
+     * @param token The token checked during long permutation searches.
+     */
+    public Group(int[] clues, int size, int groupId, SolverConfig config, CancellationToken token)
     {
         this.clues = clues;
         this.size = size;
         this.groupId = groupId;
-        this.sizeBits = sizeBits;
+        this.config = config;
+        this.token = token;
+
+        minStart = new int[clues.length];
+        maxStart = new int[clues.length];
+        placementOrder = new int[clues.length];
+        clueBits = new long[clues.length];
+        lowBits = new long[size + 1];
+        leftStart = new int[clues.length];
+        rightStart = new int[clues.length];
+        searchFirst = new int[clues.length];
+        searchLast = new int[clues.length];
+        failedStarts = new long[clues.length];
+        deducedLine = new int[size];
+
+        strategies = config.getStrategies();
+        strategyCalls = new long[strategies.size()];
+        strategyNanos = new long[strategies.size()];
+        strategyCells = new long[strategies.size()];
+        strategyMisses = new int[strategies.size()];
+        strategySkips = new int[strategies.size()];
+        strategyOrder = new int[strategies.size()];
+        for (int i = 0; i < strategyOrder.length; i++)
+            strategyOrder[i] = i;
+
+        for (int clue : clues)
+            if (clue < 0 || (clue == 0 && clues.length > 1))
+                throw new ContradictionException(String.format("%s: invalid clue %d", describe(), clue));
+
+        if (minRequiredLength() > size)
+            throw new ContradictionException(String.format("%s: clues need %d cells but the line has %d",
+                    describe(), minRequiredLength(), size));
+
+        // The leftmost and rightmost start of each clue, with all other clues
+        // packed as tightly as possible to one side.
+        int leftPos = 0;
+        int rightPos = size - minRequiredLength();
+        for (int i = 0; i < clues.length; i++)
+        {
+            minStart[i] = leftPos;
+            maxStart[i] = rightPos;
+            leftPos += clues[i] + 1;
+            rightPos += clues[i] + 1;
+
+            /*
+            Places a binary 1 at the start on the long, shifts the binary 1 over
+            the size of the clue. Then subtracts an int 1 to have a string of
+            binary 1s the same length as the clue size. This is shifted over to
+            the start position of the clue during generation.
+             */
+            clueBits[i] = (1L << clues[i]) - 1;
+        }
+
+        // lowBits[i] has the first i cells of the line set, so the cells from a to b
+        // (exclusive) are lowBits[b] & ~lowBits[a].
+        for (int i = 0; i <= size; i++)
+            lowBits[i] = (1L << i) - 1;
 
         int n = size + clues.length - minRequiredLength();
 
         maxPermutationCount = Util.nCr(n, clues.length);
+        search = new PermutationSearch();
         isHighPermutations = isHighPermutationGroup();
 
         if (!isHighPermutations)
         {
-            permutations = new Long[maxPermutationCount];
+            permutations = new long[maxPermutationCount];
             Timing.addAllocatedPermutationCount(maxPermutationCount);
         }
     }
@@ -89,200 +213,586 @@ public class Group
     }
 
     /**
-     * Recursively generates all possible solution permutations. Permutations are
-     * verified to be compatible with the current state of the partial solution
-     * before they are stored in the long[]. Permutations are built from the
-     * first clue to the last. Everytime a clue is placed the resulting partial
-     * permutation as checked against the partial solution to early-prune
-     * incompatible groups of permutations.
+     * Getter for permutationCount.
+     *
+     * @return The number of permutations stored by the group, 0 if not generated.
+     */
+    public int getPermutationCount()
+    {
+        return permutationCount;
+    }
+
+    /**
+     * Counts the heap bytes held by the group's permutations, its cell index and its validMask.
      *
-     * @param clueIndex The index of the clue to be placed into the permutation next.
-     * @param current The current state of the permutation being generated.
-     * @param position The current index of the permutation to add the beginning of the next clue.
+     * @return The retained heap bytes, 0 if nothing is allocated.
      */
-    public void generatePermutationsStart(int clueIndex, long current, int position, boolean countOnly)
+    public long getRetainedBytes()
     {
-        if (clueIndex >= clues.length)
+        long words = permutations == null ? 0L : permutations.length;
+
+        if (cellIndex != null)
+            words += (long) size * cellIndex[0].length;
+        if (validMask != null)
+            words += validMask.length;
+
+        return words * Long.BYTES;
+    }
+
+    /**
+     * Counts the direct memory bytes held by the group's off-heap permutations, the
+     * whole capacity of their buffers.
+     *
+     * @return The retained off-heap bytes, 0 if the permutations are on the heap.
+     */
+    public long getOffHeapBytes()
+    {
+        return offHeapPermutations == null ? 0L : offHeapPermutations.getCapacityBytes();
+    }
+
+    /**
+     * Counts the stored permutations that are still consistent with the partial solution.
+     *
+     * @return The number of valid permutations, 0 if not generated.
+     */
+    public int getValidPermutationCount()
+    {
+        return permutationsGenerated ? survivorCount : 0;
+    }
+
+    /**
+     * Getter for the name of the deduction strategy that produced the last update's
+     * result, "None" if no strategy ran or gained a cell.
+     *
+     * @return The name of the last strategy.
+     */
+    public String getLastStrategy()
+    {
+        return lastStrategy;
+    }
+
+    /**
+     * Generates all the permutations consistent with the partial solution and sets
+     * up the validMask. Low permutation groups are searched on the calling thread into
+     * their pre-allocated long[], or copied from their table in the permutation cache
+     * when it is open and none of the line's cells are known. A line with known cells
+     * is searched instead, its search prunes on them and beats copying and filtering
+     * the whole table. High permutation groups are searched in parallel into a cell
+     * index, see generateInParallel().
+     */
+    private void generate()
+    {
+        orderCluesForGeneration();
+
+        if (isHighPermutations)
+            generateInParallel();
+        else
         {
-            if (((current & maskBits) ^ partialBits) == 0)
+            LongBuffer table;
+
+            Timing.timingStart(Timing.Timings.Generation);
+            try
             {
-                if (countOnly)
-                    filteredPermutationCount++;
+                table = maskBits == 0 ? PermutationCache.table(clues, size, maxPermutationCount,
+                        this::generateUnconstrained) : null;
+                if (table != null)
+                    permutationCount = copyTable(table);
                 else
-                    permutations[permutationCount++] = current;
+                    search.run(searchFirst[anchorClue], searchLast[anchorClue], permutations);
+            } finally
+            {
+                // A cancelled search still ends its timing, so a stopped solve reports its time.
+                Timing.timingEnd(Timing.Timings.Generation);
             }
 
-            return;
+            if (table == null)
+            {
+                search.addCounts();
+                permutations = search.output;
+                permutationCount = search.found;
+            }
         }
 
-        int groupSize = clues[clueIndex];
-        int maxStart = size - totalRemainingLengthStart(clueIndex);
+        Timing.addPermutationCount(permutationCount);
 
-        for (int start = position; start <= maxStart; start++)
-        {
-            Timing.addAttemptedPermutationCount();
+        validMask = new long[wordCount(permutationCount)];
+        Arrays.fill(validMask, -1L);
+        if ((permutationCount & 63) != 0)
+            validMask[validMask.length - 1] = (1L << permutationCount) - 1;
 
-            /*
-            Places a binary 1 at the start on the long, shifts the binary 1 over
-            the size of the clue. Then subtracts an int 1 to have a string of
-            binary 1s the same length as the clue size. This string of binary 1s
-            is then shifted over to its starting position.
-             */
-            long groupBits = ((1L << groupSize) - 1) << start;
-            long newBits = current | groupBits;
+        survivorCount = permutationCount;
+        summarizeSurvivors();
+        permutationsGenerated = true;
+    }
+
+    /**
+     * Generates every permutation of this line as if no cell were known, the table
+     * kept by the permutation cache. It runs the same search as generation, so the
+     * cached tables can't drift from the searched permutations. The counts of the
+     * search aren't added to the Timing totals, it isn't part of solving this line.
+     *
+     * @return The permutations of the line, bit i of a permutation is cell i.
+     * @throws IllegalStateException If the search doesn't find every permutation.
+     */
+    private long[] generateUnconstrained()
+    {
+        PermutationSearch unconstrained = new PermutationSearch();
+        unconstrained.firstStarts = minStart;
+        unconstrained.lastStarts = maxStart;
+        unconstrained.run(minStart[anchorClue], maxStart[anchorClue], new long[maxPermutationCount], 0L, 0L);
 
-            int newPosition = start + groupSize + 1; // At least 1 zero gap
+        if (unconstrained.found != maxPermutationCount)
+            throw new IllegalStateException(String.format("%s: generated %d of %d permutations", describe(),
+                    unconstrained.found, maxPermutationCount));
 
-            long writtenBitsMask = (1L << newPosition) - 1;
-            long compareMask = writtenBitsMask & maskBits;
+        return unconstrained.output;
+    }
 
-            // Filtering the partial permutation against the partial solution ensuring
-            // to only check over the range of the partial permutation.
-            if (((newBits & compareMask) ^ (partialBits & compareMask)) != 0)
+    /**
+     * Copies an unconstrained table into the group's permutations in one bulk copy,
+     * in place of a search. Only used while no cell of the line is known, so every
+     * permutation of the table is kept.
+     *
+     * @param table Every permutation of the line.
+     * @return The number of permutations copied.
+     */
+    private int copyTable(LongBuffer table)
+    {
+        table.get(0, permutations, 0, table.limit());
+        return table.limit();
+    }
+
+    /**
+     * Counts the 64 bit words needed for one bit per permutation.
+     *
+     * @param count The number of permutations.
+     * @return The number of words.
+     */
+    private static int wordCount(int count)
+    {
+        return (count + 63) >>> 6;
+    }
+
+    /**
+     * Takes the AND and the OR of all the permutations, once after generation. From
+     * then on they're kept up to date by filterPermutations().
+     */
+    private void summarizeSurvivors()
+    {
+        if (cellIndex != null)
+        {
+            summarizeIndex();
+            return;
+        }
+
+        long andMask = -1L; // all 1s
+        long orMask = 0L;
+
+        if (offHeapPermutations != null)
+            for (int i = 0; i < permutationCount; i++)
             {
-                Timing.addEarlyPrunedPermutationCount();
-                continue;
+                long permutation = offHeapPermutations.get(i);
+                andMask &= permutation;
+                orMask |= permutation;
+            }
+        else
+            for (int i = 0; i < permutationCount; i++)
+            {
+                andMask &= permutations[i];
+                orMask |= permutations[i];
             }
 
-            generatePermutationsStart(clueIndex + 1, newBits, newPosition, countOnly);
-        }
+        survivorAnd = andMask;
+        survivorOr = orMask;
     }
 
     /**
-     * Recursively generates all possible solution permutations. Permutations are
-     * verified to be compatible with the current state of the partial solution
-     * before they are stored in the Long[]. Permutations are built from the
-     * last clue to the first. Everytime a clue is placed the resulting partial
-     * permutation as checked against the partial solution to early-prune
-     * incompatible groups of permutations.
-     *
-     * @param clueIndex The index of the clue to be placed into the permutation next.
-     * @param current The current state of the permutation being generated.
-     * @param position The current index of the permutation to add the beginning of the next clue.
+     * Takes the AND and the OR of the valid permutations from the cell index. Every
+     * valid permutation matches the known cells, so only the unknown cells are tested,
+     * and the test of a cell stops at the first word showing it filled in one valid
+     * permutation and blank in another, which is almost always one of the first words.
      */
-    public void generatePermutationsEnd(int clueIndex, long current, int position, boolean countOnly)
+    private void summarizeIndex()
     {
-        if (clueIndex < 0)
+        long andMask = partialBits;
+        long orMask = partialBits;
+
+        for (long cells = ~maskBits & lowBits[size]; cells != 0; cells &= cells - 1)
         {
-            if (((current & maskBits) ^ partialBits) == 0)
+            int cell = Long.numberOfTrailingZeros(cells);
+            long[] filled = cellIndex[cell];
+            boolean any = false;
+            boolean all = true;
+
+            for (int w = 0; w < validMask.length && (!any || all); w++)
             {
-                if (countOnly)
-                    filteredPermutationCount++;
-                else
-                    permutations[permutationCount++] = current;
+                any |= (validMask[w] & filled[w]) != 0;
+                all &= (validMask[w] & ~filled[w]) == 0;
             }
 
+            if (any)
+                orMask |= 1L << cell;
+            if (all)
+                andMask |= 1L << cell;
+        }
+
+        survivorAnd = andMask;
+        survivorOr = orMask;
+    }
+
+    /**
+     * Generates the permutations of a high permutation group in parallel. The search
+     * is split into one subtree per start position of the anchor clue and each subtree
+     * is a fork-join task with its own PermutationSearch, filling its own segment.
+     * The segments are then transposed in order into the cell index, or flushed off
+     * the heap when the solver configuration asks for it. The cell index takes one
+     * bit per cell of a permutation instead of a whole long, and lets filtering apply
+     * a known cell to 64 permutations at once.
+     */
+    private void generateInParallel()
+    {
+        int first = searchFirst[anchorClue];
+        PermutationSearch[] searches = new PermutationSearch[searchLast[anchorClue] - first + 1];
+
+        if (config.isOffHeap())
+        {
+            generateOffHeap(first, searches);
             return;
         }
 
-        int groupSize = clues[clueIndex];
-        int maxStart = size - totalRemainingLengthEnd(clueIndex);
+        Timing.timingStart(Timing.Timings.Generation);
+        try
+        {
+            IntStream.range(0, searches.length).parallel().forEach(i ->
+            {
+                searches[i] = new PermutationSearch();
+                searches[i].run(first + i, first + i, new long[SEGMENT_SIZE]);
+            });
+        } finally
+        {
+            Timing.timingEnd(Timing.Timings.Generation);
+        }
+
+        permutationCount = 0;
+        for (PermutationSearch subtree : searches)
+            permutationCount += subtree.found;
 
-        for (int start = position; start <= maxStart; start++)
+        Timing.timingStart(Timing.Timings.Initialization);
+        int words = wordCount(permutationCount);
+        cellIndex = new long[size][words];
+        Timing.addAllocatedPermutationCount(permutationCount);
+
+        // The index of the first permutation of each subtree, so a chunk of words can
+        // find the subtree its first permutation is in.
+        int[] subtreeStart = new int[searches.length + 1];
+        for (int i = 0; i < searches.length; i++)
         {
-            Timing.addAttemptedPermutationCount();
-            /*\
-            Places a binary 1 at the end position of the permutation which is not a fixed
-            bit of the long ei. 2^n. Then subtracts a binary 1 shifted from the end position
-            closer to the 0th position the size of the clue ie 2^n - 2^(n-cluesize). This
-            results in a string of 1s at the end of the permutation the length of the clue.
-            This string of 1s is then shifted over to the starting position.
-             */
-            long groupBits = (sizeBits - (sizeBits >> groupSize)) >> start;
-            long newBits = current | groupBits;
+            subtreeStart[i + 1] = subtreeStart[i] + searches[i].found;
+            searches[i].addCounts();
+        }
 
-            int newPosition = start + groupSize + 1; // At least 1 zero gap
+        int chunks = (words + INDEX_CHUNK_WORDS - 1) / INDEX_CHUNK_WORDS;
+        IntStream.range(0, chunks).parallel().forEach(chunk ->
+                indexWords(searches, subtreeStart, chunk * INDEX_CHUNK_WORDS,
+                        Math.min(words, (chunk + 1) * INDEX_CHUNK_WORDS)));
+        Timing.timingEnd(Timing.Timings.Initialization);
+    }
 
-            long writtenBitsMask = sizeBits - (sizeBits >> newPosition);
-            long compareMask = writtenBitsMask & maskBits;
+    /**
+     * Transposes the permutations of a range of words of the cell index from the
+     * segments of the subtree searches. The 64 permutations of a word are gathered
+     * into a block and transposed as a 64x64 bit matrix, see transpose(), so the
+     * index is written once per word and cell.
+     *
+     * @param searches The subtree searches, in permutation order.
+     * @param subtreeStart The index of the first permutation of each subtree.
+     * @param fromWord The first word to fill.
+     * @param toWord The word after the last word to fill.
+     */
+    private void indexWords(PermutationSearch[] searches, int[] subtreeStart, int fromWord, int toWord)
+    {
+        long[] block = new long[64];
+        int index = fromWord << 6;
+        int end = Math.min(toWord << 6, permutationCount);
+        int subtree = 0;
 
-            if (((newBits & compareMask) ^ (partialBits & compareMask)) != 0)
+        for (int w = fromWord; w < toWord; w++)
+        {
+            for (int bit = 0; bit < 64; bit++, index++)
             {
-                Timing.addEarlyPrunedPermutationCount();
-                continue;
+                if (index >= end)
+                {
+                    block[bit] = 0L;
+                    continue;
+                }
+
+                while (index >= subtreeStart[subtree + 1])
+                    subtree++;
+                block[bit] = searches[subtree].output[index - subtreeStart[subtree]];
             }
 
-            generatePermutationsEnd(clueIndex - 1, newBits, newPosition, countOnly);
+            transpose(block);
+            for (int cell = 0; cell < size; cell++)
+                cellIndex[cell][w] = block[cell];
         }
     }
 
     /**
+     * Transposes a 64x64 bit matrix in place, so bit j of word c becomes bit c of
+     * word j. Swaps the off-diagonal 32x32 blocks, then the 16x16 blocks within them
+     * and so on down to single bits, 6 rounds of 32 word swaps.
      *
+     * @param block The 64 words of the matrix.
+     */
+    private static void transpose(long[] block)
+    {
+        long mask = 0x00000000FFFFFFFFL;
+
+        for (int j = 32; j != 0; j >>>= 1, mask ^= mask << j)
+            for (int k = 0; k < 64; k = ((k | j) + 1) & ~j)
+            {
+                long swap = ((block[k] >>> j) ^ block[k | j]) & mask;
+                block[k] ^= swap << j;
+                block[k | j] ^= swap;
+            }
+    }
+
+    /**
+     * Generates the permutations of a high permutation group in parallel subtrees like
+     * generateInParallel(), with every subtree flushing its segment into one shared
+     * off-heap store whenever the segment is full. The heap only ever holds one
+     * segment per subtree.
      *
-     * @param partial The current partial row/column state.
-     * @return A string to denote which direction to start building the permutations from.
+     * @param first The first start position of the anchor clue.
+     * @param searches The search of each start position of the anchor clue.
      */
-    private Direction directionForGeneration(int[] partial)
+    private void generateOffHeap(int first, PermutationSearch[] searches)
     {
-        int startFilled = 0;
-        int endFilled = 0;
+        OffHeapPermutations store = new OffHeapPermutations();
 
-        for (int i = 0; i < partial.length / 2; i++)
+        Timing.timingStart(Timing.Timings.Generation);
+        try
+        {
+            IntStream.range(0, searches.length).parallel().forEach(i ->
+            {
+                searches[i] = new PermutationSearch();
+                searches[i].sink = store;
+                searches[i].run(first + i, first + i, new long[SEGMENT_SIZE]);
+            });
+        } finally
         {
-            if (partial[i] != 0)
-                startFilled++;
-            if (partial[size - (i + 1)] != 0)
-                endFilled++;
+            Timing.timingEnd(Timing.Timings.Generation);
         }
 
-        if (startFilled >= endFilled)
-            return Direction.Start;
-        else
-            return Direction.End;
+        offHeapPermutations = store;
+        permutationCount = store.size();
+        Timing.addAllocatedPermutationCount(permutationCount);
+
+        for (PermutationSearch subtree : searches)
+            subtree.addCounts();
     }
 
     /**
-     * Updates the partialBits and maskBits based on the current state
-     * of the partial solution for use in filtering out permutations.
-     *
-     * @param partial The current partial row/column state.
+     * Bounds the search of the next generation and chooses the clue to anchor it on.
+     * Every permutation that matches the known cells places each clue between its
+     * leftmost and rightmost placements on them, so only those starts are searched
+     * and no subtree is opened for a start that can't lead to a permutation. The
+     * anchor is the clue whose bounded reach has the highest fraction of known cells,
+     * so the earliest placements are the ones most likely to be pruned. The remaining
+     * clues are placed outward from the anchor, alternating between the left and
+     * right neighbours.
      */
-    public void updateBitMasks(int[] partial)
+    private void orderCluesForGeneration()
     {
-        partialBits = 0L;
-        maskBits = 0L;
+        System.arraycopy(minStart, 0, searchFirst, 0, clues.length);
+        System.arraycopy(maxStart, 0, searchLast, 0, clues.length);
 
-        for (int i = 0; i < partial.length; i++)
+        // A clue of 0 is an empty line. A line that no placement fits is left to the
+        // search, which finds no permutations.
+        if (clues[0] != 0 && maskBits != 0)
         {
-            if (partial[i] != 0)
+            long blank = maskBits & ~partialBits;
+
+            Arrays.fill(failedStarts, 0L);
+            if (placeLeftmost(0, 0, partialBits, blank, false))
             {
-                maskBits |= (1L << i);
+                Arrays.fill(failedStarts, 0L);
+                placeLeftmost(0, 0, Long.reverse(partialBits) >>> (64 - size), Long.reverse(blank) >>> (64 - size),
+                        true);
+
+                System.arraycopy(leftStart, 0, searchFirst, 0, clues.length);
+                System.arraycopy(rightStart, 0, searchLast, 0, clues.length);
+            }
+        }
+
+        int bestKnown = -1;
+        int bestRange = 1;
+
+        for (int i = 0; i < clues.length; i++)
+        {
+            int end = searchLast[i] + clues[i];
+            int range = end - searchFirst[i];
+            long reach = (end == 64 ? -1L : (1L << end) - 1) & -(1L << searchFirst[i]);
+            int known = Long.bitCount(maskBits & reach);
 
-                if (partial[i] == 1)
-                    partialBits |= (1L << i);
+            // Comparing the fraction of known cells in each reach, known / range.
+            if ((long) known * bestRange > (long) bestKnown * range)
+            {
+                bestKnown = known;
+                bestRange = range;
+                anchorClue = i;
             }
         }
+
+        int depth = 0;
+        placementOrder[depth++] = anchorClue;
+
+        for (int left = anchorClue - 1, right = anchorClue + 1; left >= 0 || right < clues.length; left--, right++)
+        {
+            if (left >= 0)
+                placementOrder[depth++] = left;
+            if (right < clues.length)
+                placementOrder[depth++] = right;
+        }
     }
 
     /**
-     * Filters the current permutation set using bitwise comparison against the partial mask.
-     * Updates the validMask to invalidate inconsistent permutations.
+     * Adds the cells solved in this line by the intersecting lines, as published by
+     * the game board, to the partialBits and maskBits.
+     *
+     * @param filledChanges The cells of this line newly set to filled.
+     * @param blankChanges The cells of this line newly set to blank.
      */
-    public void filterPermutations() {
-
-        for (int i = validMask.nextSetBit(0); i >= 0; i = validMask.nextSetBit(i + 1))
-            if (((permutations[i] & maskBits) ^ partialBits) != 0)
-                validMask.clear(i);
+    private void applyChanges(long filledChanges, long blankChanges)
+    {
+        partialBits |= filledChanges;
+        maskBits |= filledChanges | blankChanges;
     }
 
     /**
+     * Adds the cells solved by this group itself to the partialBits and maskBits.
+     * The game board only publishes a change to the intersecting line, so the group
+     * keeps track of its own deductions.
      *
-     *
-     * @param partial The current partial row/column state.
-     * @return The consistent pattern from valid permutations.
+     * @param line The row/column state returned by this group.
      */
-    public int[] generateConsistentPattern(int[] partial)
+    private void learn(int[] line)
     {
-        int[] result = Arrays.copyOf(partial, partial.length);
+        for (int i = 0; i < size; i++)
+            if (line[i] != 0)
+            {
+                maskBits |= 1L << i;
+
+                if (line[i] == 1)
+                    partialBits |= 1L << i;
+            }
+    }
+
+    /**
+     * Filters the current permutation set against the cells that changed since the
+     * last update. Every valid permutation already matches the cells known before,
+     * so only the changed cells need to be compared. Updates the validMask to
+     * invalidate inconsistent permutations. The pass visits every valid permutation
+     * anyway, so it also takes the AND and the OR of the ones that stay valid.
+     * Groups with a cell index filter word by word instead, see filterIndex().
+     *
+     * @param filledChanges The cells of this line newly set to filled.
+     * @param blankChanges The cells of this line newly set to blank.
+     */
+    public void filterPermutations(long filledChanges, long blankChanges) {
+
+        long changes = filledChanges | blankChanges;
+        if (changes == 0)
+            return;
+
+        if (cellIndex != null)
+        {
+            filterIndex(filledChanges, blankChanges);
+            return;
+        }
+
         long andMask = -1L; // all 1s
         long orMask = 0L;
+        int count = 0;
 
-        for (int i = validMask.nextSetBit(0); i >= 0; i = validMask.nextSetBit(i + 1))
+        for (int w = 0; w < validMask.length; w++)
         {
-            andMask &= permutations[i];
-            orMask |= permutations[i];
+            long valid = validMask[w];
+
+            for (long bits = valid; bits != 0; bits &= bits - 1)
+            {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                long permutation = offHeapPermutations != null ? offHeapPermutations.get(i) : permutations[i];
+
+                if (((permutation & changes) ^ filledChanges) != 0)
+                    valid &= ~(bits & -bits);
+                else
+                {
+                    andMask &= permutation;
+                    orMask |= permutation;
+                    count++;
+                }
+            }
+
+            validMask[w] = valid;
         }
 
+        survivorAnd = andMask;
+        survivorOr = orMask;
+        survivorCount = count;
+    }
+
+    /**
+     * Filters the permutations of the cell index, 64 at a time. A newly filled cell
+     * keeps the permutations that fill it and a newly blank cell the ones that don't,
+     * so each word of the validMask is ANDed with the index words of the changed cells.
+     * Words with no valid permutations left are skipped.
+     *
+     * @param filledChanges The cells of this line newly set to filled.
+     * @param blankChanges The cells of this line newly set to blank.
+     */
+    private void filterIndex(long filledChanges, long blankChanges)
+    {
+        int count = 0;
+
+        for (int w = 0; w < validMask.length; w++)
+        {
+            long valid = validMask[w];
+            if (valid == 0)
+                continue;
+
+            for (long cells = filledChanges; cells != 0; cells &= cells - 1)
+                valid &= cellIndex[Long.numberOfTrailingZeros(cells)][w];
+            for (long cells = blankChanges; cells != 0; cells &= cells - 1)
+                valid &= ~cellIndex[Long.numberOfTrailingZeros(cells)][w];
+
+            validMask[w] = valid;
+            count += Long.bitCount(valid);
+        }
+
+        survivorCount = count;
+        summarizeIndex();
+    }
+
+    /**
+     * Finds the cells shared by every valid permutation from the AND and the OR kept
+     * by filterPermutations(). A cell filled in every valid permutation is filled, a
+     * cell filled in none of them is blank, so no pass over the permutations is needed.
+     *
+     * @param partial The current partial row/column state.
+     * @return The consistent pattern from valid permutations, in the group's own line
+     *         buffer which its next deduction overwrites.
+     * @throws ContradictionException If no permutation matches the partial line.
+     */
+    public int[] generateConsistentPattern(int[] partial)
+    {
+        if (survivorCount == 0)
+            throw new ContradictionException(String.format("%s: no permutation matches the line %s",
+                    describe(), lineToString(partial)));
+
+        int[] result = deducedLine;
+        System.arraycopy(partial, 0, result, 0, size);
+
         for (int i = 0; i < size; i++)
         {
             if (result[i] != 0)
@@ -290,38 +800,116 @@ public class Group
 
             long bitMask = 1L << i;
 
-            if ((andMask & bitMask) != 0)
+            if ((survivorAnd & bitMask) != 0)
                 result[i] = 1;
-            else if ((orMask & bitMask) == 0)
+            else if ((survivorOr & bitMask) == 0)
                 result[i] = -1;
         }
 
         return result;
     }
 
-    private int totalRemainingLengthStart(int fromIndex)
+    /**
+     * Checks if the group has generated its permutations and every one of them
+     * has been filtered out, meaning the partial solution can't be completed.
+     *
+     * @return True if no permutation is consistent with the partial solution.
+     */
+    public boolean hasNoValidPermutations()
     {
-        int total = 0;
-        for (int i = fromIndex; i < clues.length; i++)
-            total += clues[i];
+        return permutationsGenerated && survivorCount == 0;
+    }
 
-        total += (clues.length - fromIndex - 1);
-        return total;
+    /**
+     * The known cells and valid permutations of a group, saved before a guess.
+     */
+    public static class State
+    {
+        private final long partialBits;
+        private final long maskBits;
+        private final long[] validMask;
+        private final long survivorAnd;
+        private final long survivorOr;
+        private final int survivorCount;
+
+        private State(long partialBits, long maskBits, long[] validMask, long survivorAnd, long survivorOr,
+                      int survivorCount)
+        {
+            this.partialBits = partialBits;
+            this.maskBits = maskBits;
+            this.validMask = validMask;
+            this.survivorAnd = survivorAnd;
+            this.survivorOr = survivorOr;
+            this.survivorCount = survivorCount;
+        }
     }
 
-    private int totalRemainingLengthEnd(int fromIndex)
+    /**
+     * Saves the known cells and the set of valid permutations so the group can be
+     * restored after a guess made while searching for solutions is undone.
+     *
+     * @return The state of the group, with a copy of the validMask if permutations are generated.
+     */
+    public State saveState()
     {
-        int total = 0;
-        for (int i = fromIndex; i >= 0; i--)
-            total += clues[i];
+        return new State(partialBits, maskBits, permutationsGenerated ? validMask.clone() : null,
+                survivorAnd, survivorOr, survivorCount);
+    }
 
-        total += fromIndex;
-        return total;
+    /**
+     * Restores the known cells and the set of valid permutations saved by saveState().
+     * If the group had not generated its permutations when the state was saved, any
+     * permutations generated since are discarded as they were filtered by the undone guess.
+     *
+     * @param state The state returned by saveState().
+     */
+    public void restoreState(State state)
+    {
+        partialBits = state.partialBits;
+        maskBits = state.maskBits;
+
+        if (state.validMask != null)
+        {
+            validMask = state.validMask.clone();
+            survivorAnd = state.survivorAnd;
+            survivorOr = state.survivorOr;
+            survivorCount = state.survivorCount;
+            return;
+        }
+
+        if (!permutationsGenerated)
+            return;
+
+        permutationsGenerated = false;
+        permutationCount = 0;
+        survivorCount = 0;
+        validMask = null;
+
+        if (isHighPermutations)
+        {
+            permutations = null;
+            cellIndex = null;
+        }
+        releasePermutations();
+    }
+
+    /**
+     * Drops the off-heap permutations of the group, if it has any. Called once a solve
+     * is over so the direct memory of a solve can be freed, which happens when the
+     * garbage collector next collects the buffers, not during this call.
+     */
+    public void releasePermutations()
+    {
+        if (offHeapPermutations != null)
+        {
+            offHeapPermutations.release();
+            offHeapPermutations = null;
+        }
     }
 
     public boolean isHighPermutationGroup()
     {
-        return maxPermutationCount > PERMUTATION_LIMIT;
+        return maxPermutationCount > config.getPermutationLimit();
     }
 
     public boolean isReadyToGenerate(int[] partial) {
@@ -330,7 +918,7 @@ public class Group
             if (val != 0)
                 knownCount++;
 
-        return (double) knownCount / size >= GENERATION_THRESHOLD;
+        return (double) knownCount / size >= config.getGenerationThreshold();
     }
 
     public int minRequiredLength()
@@ -348,260 +936,438 @@ public class Group
      * Forces full permutation generation regardless of threshold.
      * Used when progress has stalled or a group is known to be safe to generate.
      *
-     * @param partial The current partial row/column state.
-     * @return The consistent pattern from valid permutations.
+     * @param partial The current partial row/column state, never a line returned by
+     *                this group as the result is written into that buffer.
+     * @return The consistent pattern from valid permutations, in the group's own line
+     *         buffer, which is only valid until the next update.
+     * @throws IllegalArgumentException If partial is the group's own line buffer.
      */
     public int[] forceGeneration(int[] partial)
     {
-
-        if (isHighPermutations)
-        {
-            Timing.timingStart(Timing.Timings.Initialization);
-            permutations = new Long[maxPermutationCount];
-            Timing.addAllocatedPermutationCount(maxPermutationCount);
-            Timing.timingEnd(Timing.Timings.Initialization);
-        }
-
-        Timing.timingStart(Timing.Timings.Generation);
-        Direction generationDirection = directionForGeneration(partial);
-
-        if (generationDirection == Direction.Start)
-            generatePermutationsStart(0, 0L, 0, false);
-        else
-            generatePermutationsEnd(clues.length - 1, 0L, 0, false);
-
-        Timing.addPermutationCount(permutationCount);
-
-        validMask = new BitSet(permutationCount);
-        validMask.set(0, permutationCount);
-        permutationsGenerated = true;
-        Timing.timingEnd(Timing.Timings.Generation);
+        checkPartial(partial);
+        generatePermutations(partial, "Force Generation");
 
         Timing.timingStart(Timing.Timings.ConsistentPattern);
         int[] result = generateConsistentPattern(partial);
         Timing.timingEnd(Timing.Timings.ConsistentPattern);
 
-        Timing.addMaxPermutationCount(maxPermutationCount);
+        lastStrategy = "Force Generation";
+        learn(result);
+        return result;
+    }
+
+    /**
+     * Generates the permutations consistent with the partial solution and records
+     * the generation stats.
+     *
+     * @param partial The current partial row/column state.
+     * @param reason The reason for generating, shown in the generation stats.
+     */
+    public void generatePermutations(int[] partial, String reason)
+    {
+        generate();
 
-        String generationStats = String.format("Force Generation: Group %2d: Max Permutations: %,10d Stored Permutations: %,10d%n", groupId, maxPermutationCount, permutationCount);
-        GenerationStatWriter.addGenerationStats(generationStats);
+        Timing.addMaxPermutationCount(maxPermutationCount);
 
-        return result;
+        GenerationStatWriter.addGenerationStats(reason, groupId, maxPermutationCount, permutationCount);
     }
 
     /**
      * Main logic for updating this group based on its current partial solution.
-     * Performs filtering, generation, or edge logic depending on the current state.
+     * Filters the generated permutations against the changed cells, then runs the
+     * deduction pipeline, see runStrategies().
      *
-     * @param partial The current partial row/column state.
-     * @return The updated array with any new deductions applied.
+     * @param partial The current partial row/column state, never a line returned by
+     *                this group as the result is written into that buffer.
+     * @param filledChanges The cells of this line set to filled since the last update.
+     * @param blankChanges The cells of this line set to blank since the last update.
+     * @return The updated array with any new deductions applied, either partial or the
+     *         group's own line buffer, which is only valid until the next update.
+     * @throws IllegalArgumentException If partial is the group's own line buffer.
      */
-    public int[] updateGroup(int[] partial)
+    public int[] updateGroup(int[] partial, long filledChanges, long blankChanges)
     {
-        updateBitMasks(partial);
+        checkPartial(partial);
+        applyChanges(filledChanges, blankChanges);
 
         if (permutationsGenerated)
         {
             Timing.timingStart(Timing.Timings.Filtering);
-            filterPermutations();
+            filterPermutations(filledChanges, blankChanges);
             Timing.timingEnd(Timing.Timings.Filtering);
         }
-        else
+
+        return runStrategies(partial);
+    }
+
+    /**
+     * Runs the deduction strategies of the solver configuration until one of them
+     * gains a cell or an exhaustive strategy has run. The strategies that aren't
+     * exhaustive are tried in order of the cells they have gained per nanosecond on
+     * this group, untried strategies first, and costly strategies that keep missing
+     * are skipped, see isSkipped().
+     *
+     * @param partial The current partial row/column state.
+     * @return The updated array with any new deductions applied.
+     */
+    private int[] runStrategies(int[] partial)
+    {
+        for (int index : strategyOrder)
         {
-            Timing.timingStart(Timing.Timings.EdgePattern);
-            int[] edgeLogic = deduceEdgePatterns(partial);
-            Timing.timingEnd(Timing.Timings.EdgePattern);
+            DeductionStrategy strategy = strategies.get(index);
 
-            if (hasNewInfo(partial, edgeLogic))
-                return edgeLogic;
+            if (!strategy.isApplicable(this, partial))
+                continue;
 
-            if (isHighPermutations && !isReadyToGenerate(partial))
-                return partial;
-            Direction generationDirection = directionForGeneration(partial);
+            if (isSkipped(index))
+                continue;
 
-            if (isHighPermutations)
-            {
-                Timing.timingStart(Timing.Timings.CountGeneration);
-                if (generationDirection == Direction.Start)
-                    generatePermutationsStart(0, 0L, 0, true);
-                else
-                    generatePermutationsEnd(clues.length - 1, 0L, 0, true);
-                Timing.timingEnd(Timing.Timings.CountGeneration);
+            long start = System.nanoTime();
+            int[] result = strategy.deduce(this, partial);
+            long nanos = System.nanoTime() - start;
+            int gained = countNewCells(partial, result);
 
-                Timing.timingStart(Timing.Timings.Initialization);
-                permutations = new Long[filteredPermutationCount];
-                Timing.addAllocatedPermutationCount(filteredPermutationCount);
-                Timing.timingEnd(Timing.Timings.Initialization);
+            strategyCalls[index]++;
+            strategyNanos[index] += nanos;
+            strategyCells[index] += gained;
+            strategyMisses[index] = gained > 0 ? 0 : strategyMisses[index] + 1;
+            Timing.addStrategyStats(strategy.getName(), nanos, gained);
+
+            if (gained > 0 || strategy.isExhaustive())
+            {
+                lastStrategy = strategy.getName();
+                orderStrategies();
+                learn(result);
+                return result;
             }
+        }
 
-            Timing.timingStart(Timing.Timings.Generation);
-            if (generationDirection == Direction.Start)
-                generatePermutationsStart(0, 0L, 0, false);
-            else
-                generatePermutationsEnd(clues.length - 1, 0L, 0, false);
+        lastStrategy = "None";
+        orderStrategies();
+        return partial;
+    }
 
-            Timing.addPermutationCount(permutationCount);
+    /**
+     * Checks if a strategy should be skipped on this update. A strategy that isn't
+     * exhaustive is skipped once it has missed SKIP_AFTER_MISSES times in a row on
+     * this group, but only if its calls take SKIP_MIN_NANOS on average, as skipping
+     * a cheap strategy saves less than the cells it might have gained. A skipped
+     * strategy is tried again every SKIP_AFTER_MISSES skips in case the line has
+     * changed enough for it to gain cells.
+     *
+     * @param index The index of the strategy in the pipeline.
+     * @return True if the strategy should not run.
+     */
+    private boolean isSkipped(int index)
+    {
+        if (strategies.get(index).isExhaustive() || strategyMisses[index] < SKIP_AFTER_MISSES)
+            return false;
 
-            validMask = new BitSet(permutationCount);
-            validMask.set(0, permutationCount);
-            permutationsGenerated = true;
-            Timing.timingEnd(Timing.Timings.Generation);
+        long calls = strategyCalls[index];
+        if (strategyNanos[index] < SKIP_MIN_NANOS * calls)
+            return false;
 
-            Timing.addMaxPermutationCount(maxPermutationCount);
-            String generationStats = String.format("      Generation: Group %2d: Max Permutations: %,10d Stored Permutations: %,10d%n", groupId, maxPermutationCount, permutationCount);
-            GenerationStatWriter.addGenerationStats(generationStats);
+        return ++strategySkips[index] % SKIP_AFTER_MISSES != 0;
+    }
+
+    /**
+     * Sorts the strategies that aren't exhaustive by the cells they have gained per
+     * nanosecond, highest first and untried first. Exhaustive strategies keep their
+     * configured order after them.
+     */
+    private void orderStrategies()
+    {
+        // An insertion sort, there are only a handful of strategies.
+        for (int i = 1; i < strategyOrder.length; i++)
+        {
+            int index = strategyOrder[i];
+            int j = i - 1;
+
+            while (j >= 0 && runsBefore(index, strategyOrder[j]))
+            {
+                strategyOrder[j + 1] = strategyOrder[j];
+                j--;
+            }
+            strategyOrder[j + 1] = index;
         }
+    }
 
-        Timing.timingStart(Timing.Timings.ConsistentPattern);
-        int[] result = generateConsistentPattern(partial);
-        Timing.timingEnd(Timing.Timings.ConsistentPattern);
+    private boolean runsBefore(int a, int b)
+    {
+        boolean exhaustiveA = strategies.get(a).isExhaustive();
+        boolean exhaustiveB = strategies.get(b).isExhaustive();
 
-        return result;
+        if (exhaustiveA || exhaustiveB)
+            return !exhaustiveA && exhaustiveB;
+
+        // Comparing cells per nanosecond without dividing, an untried strategy has no time.
+        if (strategyNanos[a] == 0 || strategyNanos[b] == 0)
+            return strategyNanos[a] == 0 && strategyNanos[b] != 0;
+
+        return (double) strategyCells[a] * strategyNanos[b] > (double) strategyCells[b] * strategyNanos[a];
     }
 
-    private boolean hasNewInfo(int[] original, int[] updated) {
+    private int countNewCells(int[] original, int[] updated) {
+        int count = 0;
         for (int i = 0; i < original.length; i++)
             if (original[i] == 0 && updated[i] != 0)
-                return true;
+                count++;
 
-        return false;
+        return count;
     }
 
     /**
-     * Applies custom edge-based logic to fill certain cells near the left and right edges
-     * based on the first and last clues and known filled cells.
+     * Applies the line solving rules that only need the leftmost and rightmost
+     * placements of the clues that fit the partial solution. Each clue can only be
+     * between its leftmost start and its rightmost end, so:
+     * <ul>
+     * <li>simple boxes, the overlap of the two placements of a clue is filled;</li>
+     * <li>simple spaces, a cell no clue can reach is blank;</li>
+     * <li>gap elimination, a run of unknown and filled cells between blanks that
+     * no reachable clue fits in is blank;</li>
+     * <li>clue matching, a run of filled cells that every clue able to cover it
+     * matches in length is complete, so the cells on both sides are blank.</li>
+     * </ul>
      *
      * @param partial The current partial row/column state.
-     * @return An updated version with edge-derived deductions filled in.
+     * @return An updated version with the deductions filled in, in the group's own line
+     *         buffer which its next deduction overwrites.
+     * @throws ContradictionException If the clues can't be placed on the partial line.
      */
-    public int[] deduceEdgePatterns(int[] partial)
+    public int[] deduceLinePatterns(int[] partial)
     {
-        int[] result = Arrays.copyOf(partial, partial.length);
+        int[] result = deducedLine;
+        System.arraycopy(partial, 0, result, 0, size);
+        long filled = 0L;
+        long blank = 0L;
 
-        int left = 0;
-        for (int i = 0; i <= clues[0]; i++)
+        for (int i = 0; i < size; i++)
+            if (partial[i] == 1)
+                filled |= 1L << i;
+            else if (partial[i] == -1)
+                blank |= 1L << i;
+
+        // A clue of 0 is an empty line.
+        if (clues[0] == 0)
         {
-            while (result[left] == -1)
-                ++left;
+            if (filled != 0)
+                throw new ContradictionException(String.format("%s: filled cell in the empty line %s",
+                        describe(), lineToString(partial)));
 
-            if (result[i + left] == 1)
-            {
-                if (i == 0)
-                {
-                    for (int j = left + 1; j < clues[0] + left; ++j)
-                        result[j] = 1;
+            Arrays.fill(result, -1);
+            return result;
+        }
 
-                    result[clues[0] + left] = -1;
-                    break;
+        // Finding the leftmost placement, then the rightmost placement as the leftmost
+        // placement of the reversed line. The search is exhaustive, so a line with no
+        // leftmost placement has no placement at all.
+        Arrays.fill(failedStarts, 0L);
+        if (!placeLeftmost(0, 0, filled, blank, false))
+            throw new ContradictionException(String.format("%s: the clues can't be placed on the line %s",
+                    describe(), lineToString(partial)));
 
-                } else if (i == clues[0])
-                    result[left++] = -1;
+        Arrays.fill(failedStarts, 0L);
+        placeLeftmost(0, 0, Long.reverse(filled) >>> (64 - size), Long.reverse(blank) >>> (64 - size), true);
 
-                else
-                {
-                    for (int j = left + i + 1; j < clues[0] + left; ++j)
-                        result[j] = 1;
-
-                    while (result[clues[0] + left] == 1)
-                        result[left++] = -1;
-
-                    if (result[left] == 1)
-                    {
-                        result[clues[0] + left] = -1;
-                    }
-
-                    for (int j = left + clues[0]; j < left + (clues[0] * 2) && j < partial.length; ++j)
-                        if (result[j] == -1)
-                        {
-                            for (int k = left + clues[0] - 1; k > j - clues[0] - 1; --k)
-                                result[k] = 1;
-
-                            break;
-                        }
-                    break;
-                }
-            } else if (i > 0 && i < clues[0] && result[i + left] == -1)
+        long newFilled = 0L;
+        long reachable = 0L;
+
+        for (int k = 0; k < clues.length; k++)
+        {
+            int leftEnd = leftStart[k] + clues[k];
+            int rightEnd = rightStart[k] + clues[k];
+
+            reachable |= lowBits[rightEnd] & ~lowBits[leftStart[k]];
+            if (rightStart[k] < leftEnd)
+                newFilled |= lowBits[leftEnd] & ~lowBits[rightStart[k]];
+        }
+
+        long newBlank = lowBits[size] & ~reachable;
+
+        // Gap elimination, over each run of cells that aren't blank.
+        for (int a = 0; a < size; )
+        {
+            if ((blank & (1L << a)) != 0)
             {
-                for (int j = 0; j < i; ++j)
-                    result[j] = -1;
+                a++;
+                continue;
             }
-        }
 
-        int temp;
+            int b = a;
+            while (b < size && (blank & (1L << b)) == 0)
+                b++;
 
-        for(
-                int i = 0;
-                i<=result.length/2; ++i)
+            if (!anyClueFits(a, b))
+                newBlank |= lowBits[b] & ~lowBits[a];
+            a = b;
+        }
 
+        // Clue matching, over each run of filled cells.
+        for (int p = 0; p < size; )
         {
-            temp = result[i];
-            result[i] = result[result.length - i - 1];
-            result[result.length - i - 1] = temp;
-        }
+            if ((filled & (1L << p)) == 0)
+            {
+                p++;
+                continue;
+            }
 
-        int right = 0;
-        for(int i = 0;i<=clues[clues.length-1]; ++i)
+            int q = p;
+            while (q < size && (filled & (1L << q)) != 0)
+                q++;
 
+            if (isCompleteBlock(p, q))
+            {
+                if (p > 0)
+                    newBlank |= 1L << (p - 1);
+                if (q < size)
+                    newBlank |= 1L << q;
+            }
+            p = q;
+        }
+
+        for (int i = 0; i < size; i++)
         {
-            while (result[right] == -1)
-                ++right;
+            if (result[i] != 0)
+                continue;
 
-            if (result[i + right] == 1)
-            {
-                if (i == 0)
-                {
-                    for (int j = right + 1; j < clues[clues.length-1] + right; ++j)
-                        result[j] = 1;
+            if ((newFilled & (1L << i)) != 0)
+                result[i] = 1;
+            else if ((newBlank & (1L << i)) != 0)
+                result[i] = -1;
+        }
 
-                    result[clues[clues.length-1] + right] = -1;
+        return result;
+    }
 
+    /**
+     * Checks if any clue can be placed inside a run of cells, within the bounds of
+     * its leftmost and rightmost placements.
+     *
+     * @param a The first cell of the run.
+     * @param b The cell after the end of the run.
+     * @return True if at least one clue fits in the run.
+     */
+    private boolean anyClueFits(int a, int b)
+    {
+        for (int k = 0; k < clues.length; k++)
+            if (Math.max(a, leftStart[k]) <= Math.min(b - clues[k], rightStart[k]))
+                return true;
 
+        return false;
+    }
 
-                    break;
-                } else if (i == clues[clues.length-1])
-                    result[right++] = -1;
+    /**
+     * Checks if a run of filled cells is a complete block, meaning every clue that
+     * can cover the run has the same length as the run.
+     *
+     * @param p The first filled cell of the run.
+     * @param q The cell after the end of the run.
+     * @return True if the cells on both sides of the run must be blank.
+     */
+    private boolean isCompleteBlock(int p, int q)
+    {
+        for (int k = 0; k < clues.length; k++)
+            if (leftStart[k] <= p && rightStart[k] + clues[k] >= q && clues[k] > q - p)
+                return false;
 
-                else
-                {
-                    for (int j = right + i + 1; j < clues[clues.length-1] + right; ++j)
-                        result[j] = 1;
+        return true;
+    }
 
-                    while (result[clues[clues.length-1] + right] == 1)
-                        result[right++] = -1;
+    /**
+     * Recursively finds the leftmost placement of the clues, from a clue onwards, that
+     * is consistent with the known cells. Each clue is moved right until it covers no
+     * blank cell and isn't touching a filled cell, backtracking if a filled cell would
+     * be left in the gap before it. Positions that failed are remembered in
+     * failedStarts so that no clue is tried twice from the same position.
+     * When reversed the clues are placed from the last to the first over the reversed
+     * line, giving the rightmost placement which is stored in rightStart.
+     *
+     * @param index The number of clues already placed.
+     * @param position The first cell the next clue may start at.
+     * @param filled The known filled cells of the line.
+     * @param blank The known blank cells of the line.
+     * @param reversed If the line and clues are reversed.
+     * @return True if the remaining clues could be placed.
+     */
+    private boolean placeLeftmost(int index, int position, long filled, long blank, boolean reversed)
+    {
+        if ((failedStarts[index] & (1L << position)) != 0)
+            return false;
 
-                    if (result[right] == 1)
-                    {
-                        result[clues[clues.length-1] + right] = -1;
+        int clueIndex = reversed ? clues.length - 1 - index : index;
+        int groupSize = clues[clueIndex];
+        int lastStart = reversed ? size - minStart[clueIndex] - groupSize : maxStart[clueIndex];
 
-                    }
+        for (int start = position; start <= lastStart; start++)
+        {
+            // A filled cell left in the gap before the clue can't be covered by it.
+            if (start > position && (filled & (1L << (start - 1))) != 0)
+                break;
 
-                    for (int j = right + clues[clues.length-1]; j < right + (clues[clues.length-1] * 2) && j < partial.length; ++j)
-                        if (result[j] == -1)
-                        {
-                            for (int k = right + clues[clues.length-1] - 1; k > j - clues[clues.length-1] - 1; --k)
-                                result[k] = 1;
+            int end = start + groupSize;
 
-                            break;
-                        }
-                    break;
-                }
-            } else if (i > 0 && i < clues[clues.length-1] && result[i + right] == -1)
+            if ((blank & lowBits[end] & ~lowBits[start]) != 0)
+                continue;
+            if (end < size && (filled & (1L << end)) != 0)
+                continue;
+
+            if (reversed)
+                rightStart[clueIndex] = size - end;
+            else
+                leftStart[clueIndex] = start;
+
+            if (index == clues.length - 1)
             {
-                for (int j = 0; j < i; ++j)
-                    result[j] = -1;
+                if ((filled & ~lowBits[end]) == 0)
+                    return true;
             }
+            else if (placeLeftmost(index + 1, end + 1, filled, blank, reversed))
+                return true;
         }
 
-        for(
-                int i = 0;
-                i<=result.length/2; ++i)
+        failedStarts[index] |= 1L << position;
+        return false;
+    }
 
-        {
-            temp = result[i];
-            result[i] = result[result.length - i - 1];
-            result[result.length - i - 1] = temp;
-        }
-        return result;
+    /**
+     * Checks that a partial line isn't the group's own line buffer. The deductions
+     * write their result into that buffer while still reading the partial line, so
+     * passing a result straight back in would corrupt the update.
+     *
+     * @param partial The partial line passed to an update.
+     * @throws IllegalArgumentException If partial is the group's own line buffer.
+     */
+    private void checkPartial(int[] partial)
+    {
+        if (partial == deducedLine)
+            throw new IllegalArgumentException(describe() + ": the partial line is the group's own line buffer, "
+                    + "copy the result of an update before passing it back");
+    }
+
+    /**
+     * Describes the group for contradiction messages.
+     *
+     * @return The group id and its clues.
+     */
+    private String describe()
+    {
+        return String.format("Group %d %s", groupId, Arrays.toString(clues));
+    }
+
+    /**
+     * Formats a partial line, # for a filled cell, . for a blank and ? for an unknown.
+     *
+     * @param line The partial line.
+     * @return The line as text.
+     */
+    static String lineToString(int[] line)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (int cell : line)
+            sb.append(cell == 1 ? '#' : cell == -1 ? '.' : '?');
+
+        return sb.toString();
     }
 
     public int[] overlap()
@@ -621,6 +1387,223 @@ public class Group
             for (int j = rightStart; j < leftEnd; ++j)
                 result[j] = 1;
         }
+
+        learn(result);
         return result;
     }
+
+    /**
+     * The state of one permutation search over this group's clues. Holds the frames
+     * of the placement order and the counts of the search, so that several searches
+     * of the same group can run at once on different threads.
+     */
+    private class PermutationSearch
+    {
+        private final int[] frameStart = new int[clues.length];
+        private final int[] frameLast = new int[clues.length];
+        private final int[] frameFrom = new int[clues.length];
+        private final int[] frameTo = new int[clues.length];
+        private final long[] frameBits = new long[clues.length];
+        private final int[] placedStart = new int[clues.length];
+        // The first and last start searched for each clue.
+        private int[] firstStarts = searchFirst;
+        private int[] lastStarts = searchLast;
+
+        private long[] output;
+        private int found;
+        // Where a full output is flushed to instead of being grown, or null.
+        private OffHeapPermutations sink;
+        private long attempted;
+        private long pruned;
+
+        /**
+         * Generates all possible solution permutations. Permutations are verified to be
+         * compatible with the current state of the partial solution before they are
+         * stored in the output long[]. Clues are placed in the order given by
+         * placementOrder, starting with the anchor clue and working outward from it. Everytime a clue
+         * is placed, the cells it fixes (the clue itself and the gap back to its placed
+         * neighbour) are checked against the partial solution to early-prune
+         * incompatible groups of permutations. A known blank cell under the clue or a
+         * known filled cell in the gap lets the loop skip ahead or stop early.
+         * <p>
+         * The search is iterative. Each depth of the placement order has a frame in the
+         * pre-allocated frame arrays holding the current start position of its clue, so
+         * the search allocates nothing (other than growing a full output) and the stack
+         * depth does not depend on the clues.
+         * The anchor clue is placed first, only at the start positions given, so that a
+         * search can cover a single subtree.
+         *
+         * @param anchorFrom The first start position of the anchor clue to search.
+         * @param anchorTo The last start position of the anchor clue to search.
+         * @param buffer The long[] to store the permutations in, replaced by a larger
+         *               copy whenever it is full or flushed to the sink if there is one.
+         */
+        private void run(int anchorFrom, int anchorTo, long[] buffer)
+        {
+            run(anchorFrom, anchorTo, buffer, maskBits, partialBits);
+        }
+
+        /**
+         * Generates the permutations compatible with the given known cells rather than
+         * the group's, see run(int, int, long[]).
+         *
+         * @param anchorFrom The first start position of the anchor clue to search.
+         * @param anchorTo The last start position of the anchor clue to search.
+         * @param buffer The long[] to store the permutations in.
+         * @param knownBits The known cells of the line.
+         * @param filledBits The known cells that are filled.
+         */
+        private void run(int anchorFrom, int anchorTo, long[] buffer, long knownBits, long filledBits)
+        {
+            long blankBits = knownBits & ~filledBits;
+            int lastDepth = clues.length - 1;
+            int depth = 0;
+
+            output = buffer;
+            found = 0;
+            attempted = 0;
+            pruned = 0;
+
+            pushFrame(0, 0L);
+            frameStart[0] = anchorFrom - 1;
+            frameLast[0] = anchorTo;
+
+            while (depth >= 0)
+            {
+                int start = ++frameStart[depth];
+
+                if (start > frameLast[depth])
+                {
+                    depth--;
+                    continue;
+                }
+
+                attempted++;
+
+                // Checking for cancellation every 65,536 attempts.
+                if ((attempted & 0xFFFF) == 0)
+                    token.throwIfCancelled();
+
+                int clueIndex = placementOrder[depth];
+                int groupSize = clues[clueIndex];
+                int end = start + groupSize;
+                int pad = clueIndex == anchorClue ? 1 : 0;
+                long groupBits = clueBits[clueIndex] << start;
+
+                // A known blank under the clue, move the clue past the last such blank.
+                long blockedBits = groupBits & blankBits;
+                if (blockedBits != 0)
+                {
+                    pruned++;
+                    frameStart[depth] = 63 - Long.numberOfLeadingZeros(blockedBits);
+                    continue;
+                }
+
+                // A known filled cell in the gap before the clue, if the gap is bounded by a
+                // neighbour or the edge of the line then no later start can cover it.
+                int from = frameFrom[depth];
+                if ((filledBits & lowBits[start] & ~lowBits[from >= 0 ? from : Math.max(start - pad, 0)]) != 0)
+                {
+                    pruned++;
+                    if (from >= 0)
+                        frameStart[depth] = frameLast[depth];
+                    continue;
+                }
+
+                // A known filled cell in the gap after the clue, move the clue so that it
+                // covers the last such cell.
+                int to = frameTo[depth];
+                long uncoveredBits = filledBits & lowBits[to >= 0 ? to : Math.min(end + pad, size)] & ~lowBits[end];
+                if (uncoveredBits != 0)
+                {
+                    pruned++;
+                    if (to >= 0)
+                        frameStart[depth] = 63 - Long.numberOfLeadingZeros(uncoveredBits) - groupSize;
+                    continue;
+                }
+
+                placedStart[clueIndex] = start;
+                long current = frameBits[depth] | groupBits;
+
+                if (depth < lastDepth)
+                    pushFrame(++depth, current);
+                else if (((current & knownBits) ^ filledBits) == 0)
+                {
+                    if (found == output.length)
+                        flushOutput();
+                    output[found++] = current;
+                }
+            }
+
+            if (sink != null)
+                flushOutput();
+        }
+
+        /**
+         * Makes room in a full output, by flushing it to the sink or by growing it.
+         * With a sink, found only counts the permutations still in the output.
+         */
+        private void flushOutput()
+        {
+            if (sink == null)
+            {
+                output = Arrays.copyOf(output, found * 2);
+                return;
+            }
+
+            sink.append(output, found);
+            found = 0;
+        }
+
+        /**
+         * Sets up the frame for placing the clue at a depth of the placement order.
+         * Every clue is kept within its first and last start, clues left of the anchor
+         * are also bounded by their right neighbour and clues right of the anchor by
+         * their left neighbour. A
+         * fixed from/to is the far side of the gap to a placed neighbour or to the edge
+         * of the line, otherwise it is -1 and the gap follows the start position.
+         *
+         * @param depth The index into placementOrder of the clue to be placed.
+         * @param current The permutation built from the clues placed so far.
+         */
+        private void pushFrame(int depth, long current)
+        {
+            int clueIndex = placementOrder[depth];
+            int first = firstStarts[clueIndex];
+            int last = lastStarts[clueIndex];
+
+            if (clueIndex < anchorClue)
+            {
+                frameLast[depth] = Math.min(last, placedStart[clueIndex + 1] - clues[clueIndex] - 1);
+                frameFrom[depth] = clueIndex == 0 ? 0 : -1;
+                frameTo[depth] = placedStart[clueIndex + 1];
+            }
+            else if (clueIndex > anchorClue)
+            {
+                int gapStart = placedStart[clueIndex - 1] + clues[clueIndex - 1];
+                first = Math.max(first, gapStart + 1);
+                frameLast[depth] = last;
+                frameFrom[depth] = gapStart;
+                frameTo[depth] = clueIndex == clues.length - 1 ? size : -1;
+            }
+            else
+            {
+                frameLast[depth] = last;
+                frameFrom[depth] = clueIndex == 0 ? 0 : -1;
+                frameTo[depth] = clueIndex == clues.length - 1 ? size : -1;
+            }
+
+            frameStart[depth] = first - 1;
+            frameBits[depth] = current;
+        }
+
+        /**
+         * Adds the attempted and early-pruned counts of the last search to the Timing totals.
+         */
+        private void addCounts()
+        {
+            Timing.addAttemptedPermutationCount(attempted);
+            Timing.addEarlyPrunedPermutationCount(pruned);
+        }
+    }
 }
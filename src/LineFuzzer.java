@@ -0,0 +1,547 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Differential fuzzer for the line solving of a Group. Random clues and partial lines
+ * are run through every way a group deduces cells: the overlap, the line rules, the
+ * default deduction pipeline, generation and filtering of heap, cell index and
+ * off-heap permutations, and restoring a saved state. Each result is compared to a
+ * reference that tries every line matching the known cells and keeps the ones that
+ * match the clues.
+ * <p>
+ * The exhaustive paths must find exactly the cells shared by every matching line and
+ * throw a ContradictionException when no line matches. The other paths must never
+ * set a cell differently from every matching line and never throw while a line
+ * matches. A mismatch is shrunk to a smaller line that still fails before it is
+ * printed, so it can be turned straight into a fix.
+ */
+public class LineFuzzer
+{
+    /**
+     * Overlap, LineRules and Pipeline only need to be sound, the others are exhaustive.
+     * Filtering generates on part of the known cells and filters in the rest, Restore
+     * filters in the rest, restores the state saved before and filters them in again.
+     */
+    enum Path
+    {
+        Overlap, LineRules, Pipeline, Generation, IndexGeneration, OffHeapGeneration, Filtering, IndexFiltering,
+        OffHeapFiltering, Restore, IndexRestore;
+
+        boolean isExhaustive()
+        {
+            return this != Overlap && this != LineRules && this != Pipeline;
+        }
+    }
+
+    private static final List<DeductionStrategy> GENERATION_ONLY = List.of(Deductions.Generation,
+            Deductions.Permutations);
+    // A limit of Integer.MAX_VALUE keeps every group on the heap and a limit of 0 makes
+    // every group a high permutation group. A threshold of 0 lets every group generate.
+    private static final SolverConfig HEAP = new SolverConfig("fuzz-heap", SolverConfig.Strategy.LineSolving,
+            Integer.MAX_VALUE, 0.0, GENERATION_ONLY);
+    private static final SolverConfig INDEX = new SolverConfig("fuzz-index", SolverConfig.Strategy.LineSolving,
+            0, 0.0, GENERATION_ONLY);
+    private static final SolverConfig OFF_HEAP = new SolverConfig("fuzz-off-heap",
+            SolverConfig.Strategy.LineSolving, 0, 0.0, GENERATION_ONLY, true);
+
+    private final Random random;
+    private final int maxSize;
+
+    /**
+     * One fuzzed line: the clues, the known cells and the part of them known when
+     * the permutations were generated.
+     */
+    private static class Case
+    {
+        final int size;
+        final int[] clues;
+        final int[] partial;
+        final int[] before;
+
+        Case(int size, int[] clues, int[] partial, int[] before)
+        {
+            this.size = size;
+            this.clues = clues;
+            this.partial = partial;
+            this.before = before;
+        }
+    }
+
+    /**
+     * Fuzzes the line solving paths and prints every path that failed with its
+     * shrunk reproducer.
+     *
+     * @param args "-seed n", "-cases n", "-maxSize n" for the longest line, at most
+     *             24, and "-permutationCache dir" to read the permutations of every
+     *             heap group generated with no known cells from the permutation cache,
+     *             however few they are.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        long seed = System.nanoTime();
+        int cases = 10_000;
+        int maxSize = 16;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                case "-cases" -> cases = Integer.parseInt(args[++i]);
+                case "-maxSize" -> maxSize = Math.min(Integer.parseInt(args[++i]), 24);
+                case "-permutationCache" -> PermutationCache.open(args[++i], PermutationCache.DEFAULT_LIMIT_BYTES, 1);
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        System.out.printf("Fuzzing %,d lines of up to %d cells with seed %d%n", cases, maxSize, seed);
+
+        if (!new LineFuzzer(seed, maxSize).run(cases))
+            System.exit(1);
+    }
+
+    /**
+     * Constructs a LineFuzzer.
+     *
+     * @param seed The seed for the random number generator.
+     * @param maxSize The longest line fuzzed.
+     */
+    public LineFuzzer(long seed, int maxSize)
+    {
+        random = new Random(seed);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Runs every path on a number of random lines. The first failure of each path is
+     * shrunk and printed, later failures of the same path are only counted.
+     *
+     * @param cases The number of random lines.
+     * @return True if no path failed.
+     */
+    public boolean run(int cases)
+    {
+        int[] failures = new int[Path.values().length];
+
+        for (int n = 0; n < cases; n++)
+        {
+            Case line = randomCase();
+
+            for (Path path : Path.values())
+            {
+                if (check(path, line) == null)
+                    continue;
+
+                if (failures[path.ordinal()]++ == 0)
+                    report(path, minimize(path, line), n + 1);
+            }
+
+            // The groups add to the solve statistics, which would grow without end.
+            Timing.reset();
+            GenerationStatWriter.reset();
+        }
+
+        boolean passed = true;
+        for (Path path : Path.values())
+            if (failures[path.ordinal()] > 0)
+            {
+                System.out.printf("%s failed %,d of %,d lines%n", path, failures[path.ordinal()], cases);
+                passed = false;
+            }
+
+        if (passed)
+            System.out.printf("All %d paths matched the reference on %,d lines%n", Path.values().length, cases);
+
+        return passed;
+    }
+
+    /**
+     * Makes a random line. The clues come from a random solution, some of its cells
+     * are known and about half of those were known at generation. One line in ten has
+     * a known cell flipped, so it may have no solution at all.
+     *
+     * @return The random line.
+     */
+    private Case randomCase()
+    {
+        int size = 1 + random.nextInt(maxSize);
+        double density = random.nextDouble();
+        double knownFraction = random.nextDouble();
+        long solution = 0L;
+        int[] partial = new int[size];
+        int[] before = new int[size];
+
+        for (int i = 0; i < size; i++)
+            if (random.nextDouble() < density)
+                solution |= 1L << i;
+
+        for (int i = 0; i < size; i++)
+            if (random.nextDouble() < knownFraction)
+            {
+                partial[i] = (solution & (1L << i)) != 0 ? 1 : -1;
+                if (random.nextBoolean())
+                    before[i] = partial[i];
+            }
+
+        if (random.nextInt(10) == 0)
+        {
+            int i = random.nextInt(size);
+            partial[i] = partial[i] == 1 ? -1 : 1;
+            before[i] = before[i] == 0 ? 0 : partial[i];
+        }
+
+        return new Case(size, cluesOf(solution), partial, before);
+    }
+
+    /**
+     * Runs a path on a line and compares it to the reference.
+     *
+     * @param path The path to run.
+     * @param line The line.
+     * @return What went wrong, or null if the path matched the reference.
+     */
+    private static String check(Path path, Case line)
+    {
+        // The overlap only ever sees an empty line.
+        int[] partial = path == Path.Overlap ? new int[line.size] : line.partial;
+        int[] expected = reference(line.clues, line.size, partial);
+        int[] actual;
+
+        try
+        {
+            actual = run(path, line);
+        } catch (ContradictionException e)
+        {
+            return expected == null ? null : "threw \"" + e.getMessage() + "\" but " + Group.lineToString(expected)
+                    + " matches";
+        } catch (RuntimeException e)
+        {
+            return "threw " + e;
+        }
+
+        if (expected == null)
+            return path.isExhaustive() ? "returned " + Group.lineToString(actual) + " but no line matches" : null;
+
+        if (actual.length != line.size)
+            return "returned " + actual.length + " cells";
+
+        for (int i = 0; i < line.size; i++)
+        {
+            if (partial[i] != 0 && actual[i] != partial[i])
+                return "changed the known cell " + i;
+            if (path.isExhaustive() ? actual[i] != expected[i] : actual[i] != 0 && actual[i] != expected[i])
+                return "cell " + i + " is " + Group.lineToString(actual) + ", expected " + Group.lineToString(expected);
+        }
+
+        return null;
+    }
+
+    /**
+     * Runs a path on fresh groups.
+     *
+     * @param path The path to run.
+     * @param line The line.
+     * @return The line deduced by the path.
+     */
+    private static int[] run(Path path, Case line)
+    {
+        return switch (path)
+        {
+            case Overlap -> new Group(line.clues, line.size, 0).overlap();
+            case LineRules -> new Group(line.clues, line.size, 0).deduceLinePatterns(line.partial.clone());
+            case Pipeline -> update(new Group(line.clues, line.size, 0), new int[line.size], line.partial);
+            case Generation -> generateAndFilter(HEAP, line, false, false);
+            case IndexGeneration -> generateAndFilter(INDEX, line, false, false);
+            case OffHeapGeneration -> generateAndFilter(OFF_HEAP, line, false, false);
+            case Filtering -> generateAndFilter(HEAP, line, true, false);
+            case IndexFiltering -> generateAndFilter(INDEX, line, true, false);
+            case OffHeapFiltering -> generateAndFilter(OFF_HEAP, line, true, false);
+            case Restore -> generateAndFilter(HEAP, line, true, true);
+            case IndexRestore -> generateAndFilter(INDEX, line, true, true);
+        };
+    }
+
+    /**
+     * Generates a group's permutations and deduces its line. Either all the known
+     * cells are known at generation, or only the cells of before are and the rest are
+     * filtered in by a second update.
+     *
+     * @param config The solver configuration of the group.
+     * @param line The line.
+     * @param filter If the permutations are generated on before and then filtered.
+     * @param restore If the filter is undone by restoring the saved state and done again.
+     * @return The line deduced by the last update.
+     */
+    private static int[] generateAndFilter(SolverConfig config, Case line, boolean filter, boolean restore)
+    {
+        Group group = new Group(line.clues, line.size, 0, config, CancellationToken.NONE);
+
+        try
+        {
+            if (!filter)
+                return update(group, new int[line.size], line.partial);
+
+            update(group, new int[line.size], line.before);
+
+            if (restore)
+            {
+                Group.State state = group.saveState();
+                try
+                {
+                    update(group, line.before, line.partial);
+                } catch (ContradictionException e)
+                {
+                    // The line is checked again after the restore.
+                }
+                group.restoreState(state);
+            }
+
+            return update(group, line.before, line.partial);
+        } finally
+        {
+            group.releasePermutations();
+        }
+    }
+
+    /**
+     * Updates a group with the cells known since its last update.
+     *
+     * @param group The group.
+     * @param previous The cells known at its last update.
+     * @param partial The cells known now.
+     * @return The line returned by the update.
+     */
+    private static int[] update(Group group, int[] previous, int[] partial)
+    {
+        long filledChanges = 0L;
+        long blankChanges = 0L;
+
+        for (int i = 0; i < partial.length; i++)
+            if (previous[i] == 0 && partial[i] == 1)
+                filledChanges |= 1L << i;
+            else if (previous[i] == 0 && partial[i] == -1)
+                blankChanges |= 1L << i;
+
+        return group.updateGroup(partial.clone(), filledChanges, blankChanges);
+    }
+
+    /**
+     * Finds the cells shared by every line that matches the clues and the known
+     * cells, by trying every way of filling the unknown cells.
+     *
+     * @param clues The clues of the line.
+     * @param size The number of cells in the line.
+     * @param partial The known cells.
+     * @return The known cells and the cells shared by every matching line, or null if
+     *         no line matches.
+     */
+    static int[] reference(int[] clues, int size, int[] partial)
+    {
+        long filled = 0L;
+        long unknown = 0L;
+        long andMask = -1L;
+        long orMask = 0L;
+        boolean matched = false;
+
+        for (int i = 0; i < size; i++)
+            if (partial[i] == 1)
+                filled |= 1L << i;
+            else if (partial[i] == 0)
+                unknown |= 1L << i;
+
+        // Every subset of the unknown cells, from all of them down to none.
+        for (long subset = unknown; ; subset = (subset - 1) & unknown)
+        {
+            long candidate = filled | subset;
+
+            if (matchesClues(candidate, clues))
+            {
+                matched = true;
+                andMask &= candidate;
+                orMask |= candidate;
+            }
+
+            if (subset == 0)
+                break;
+        }
+
+        if (!matched)
+            return null;
+
+        int[] result = new int[size];
+        for (int i = 0; i < size; i++)
+            if ((andMask & (1L << i)) != 0)
+                result[i] = 1;
+            else if ((orMask & (1L << i)) == 0)
+                result[i] = -1;
+
+        return result;
+    }
+
+    /**
+     * Checks if the runs of filled cells of a line are the clues, in order.
+     *
+     * @param line The line, bit i is cell i.
+     * @param clues The clues, {0} for an empty line.
+     * @return True if the line matches the clues.
+     */
+    private static boolean matchesClues(long line, int[] clues)
+    {
+        if (clues[0] == 0)
+            return line == 0;
+
+        for (int clue : clues)
+        {
+            if (line == 0)
+                return false;
+
+            // The run has to be filled with a blank cell after it.
+            int start = Long.numberOfTrailingZeros(line);
+            long run = ((1L << clue) - 1) << start;
+            if ((line & (run | (1L << (start + clue)))) != run)
+                return false;
+
+            line &= ~run;
+        }
+
+        return line == 0;
+    }
+
+    /**
+     * Takes the clues of a line, the lengths of its runs of filled cells, {0} for an
+     * empty line.
+     *
+     * @param line The line, bit i is cell i.
+     * @return The clues of the line.
+     */
+    private static int[] cluesOf(long line)
+    {
+        ArrayList<Integer> runs = new ArrayList<>();
+
+        while (line != 0)
+        {
+            int start = Long.numberOfTrailingZeros(line);
+            int length = Long.numberOfTrailingZeros(~(line >>> start));
+
+            runs.add(length);
+            line &= ~(((1L << length) - 1) << start);
+        }
+
+        if (runs.isEmpty())
+            return new int[] {0};
+
+        return runs.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Shrinks a failing line for as long as a smaller line still fails the same path.
+     *
+     * @param path The failing path.
+     * @param line The failing line.
+     * @return The smallest failing line found.
+     */
+    private static Case minimize(Path path, Case line)
+    {
+        boolean shrunk = true;
+
+        while (shrunk)
+        {
+            shrunk = false;
+
+            for (Case candidate : shrinks(line))
+                if (check(path, candidate) != null)
+                {
+                    line = candidate;
+                    shrunk = true;
+                    break;
+                }
+        }
+
+        return line;
+    }
+
+    /**
+     * Lists the lines one step smaller than a line: without its first or last cell,
+     * without a clue, with a clue one shorter, with a known cell unknown, or with a
+     * cell known at generation only filtered in.
+     *
+     * @param line The line to shrink.
+     * @return The smaller lines.
+     */
+    private static ArrayList<Case> shrinks(Case line)
+    {
+        ArrayList<Case> candidates = new ArrayList<>();
+        int size = line.size;
+
+        if (size > 1)
+        {
+            candidates.add(new Case(size - 1, line.clues, Arrays.copyOfRange(line.partial, 1, size),
+                    Arrays.copyOfRange(line.before, 1, size)));
+            candidates.add(new Case(size - 1, line.clues, Arrays.copyOf(line.partial, size - 1),
+                    Arrays.copyOf(line.before, size - 1)));
+        }
+
+        for (int k = 0; k < line.clues.length; k++)
+        {
+            if (line.clues.length > 1)
+            {
+                int[] clues = new int[line.clues.length - 1];
+                System.arraycopy(line.clues, 0, clues, 0, k);
+                System.arraycopy(line.clues, k + 1, clues, k, clues.length - k);
+                candidates.add(new Case(size, clues, line.partial, line.before));
+            }
+
+            if (line.clues[k] > 1)
+            {
+                int[] clues = line.clues.clone();
+                clues[k]--;
+                candidates.add(new Case(size, clues, line.partial, line.before));
+            }
+        }
+
+        for (int i = 0; i < size; i++)
+        {
+            if (line.partial[i] != 0)
+            {
+                int[] partial = line.partial.clone();
+                int[] before = line.before.clone();
+                partial[i] = 0;
+                before[i] = 0;
+                candidates.add(new Case(size, line.clues, partial, before));
+            }
+
+            if (line.before[i] != 0)
+            {
+                int[] before = line.before.clone();
+                before[i] = 0;
+                candidates.add(new Case(size, line.clues, line.partial, before));
+            }
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Prints a failing path with its shrunk line.
+     *
+     * @param path The failing path.
+     * @param line The shrunk failing line.
+     * @param caseNumber The number of the random line that first failed.
+     */
+    private static void report(Path path, Case line, int caseNumber)
+    {
+        int[] partial = path == Path.Overlap ? new int[line.size] : line.partial;
+        int[] expected = reference(line.clues, line.size, partial);
+
+        System.out.printf("%nMismatch in %s, first seen on line %,d, shrunk to:%n", path, caseNumber);
+        System.out.printf("  size     %d%n", line.size);
+        System.out.printf("  clues    %s%n", Arrays.toString(line.clues));
+        System.out.printf("  before   %s%n", Group.lineToString(line.before));
+        System.out.printf("  partial  %s%n", Group.lineToString(partial));
+        System.out.printf("  expected %s%n", expected == null ? "no matching line" : Group.lineToString(expected));
+        System.out.printf("  problem  %s%n", check(path, line));
+    }
+}
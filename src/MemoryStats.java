@@ -0,0 +1,210 @@
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Memory accounting of a solve, read from the management MXBeans: the peak heap
+ * used, the bytes allocated during each phase, the garbage collections and their
+ * time, and the permutation bytes each group retained. Kept alongside the Timing
+ * statistics and written to the same file.
+ */
+public class MemoryStats
+{
+    // The phases allocations are counted for, the others run too often to read the counters.
+    private static final List<Timing.Timings> PHASES = List.of(Timing.Timings.FileReading,
+            Timing.Timings.Initialization, Timing.Timings.Overlap, Timing.Timings.SolvingLoop,
+            Timing.Timings.Generation, Timing.Timings.Total);
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private static final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+    private static final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private static final long[] phaseBytesStart = new long[Timing.Timings.values().length];
+    private static final long[] phaseBytesEnd = new long[Timing.Timings.values().length];
+    private static final long[] gcCountStart = new long[collectors.size()];
+    private static final long[] gcTimeStart = new long[collectors.size()];
+    private static final ArrayList<long[]> groupBytes = new ArrayList<>();
+
+    static
+    {
+        reset();
+    }
+
+    /**
+     * Counts the bytes allocated by every thread from the start of a phase. Both
+     * generation and the total are a sum of all starting counts, like their times.
+     *
+     * @param timing The name of the solving process.
+     */
+    public static void phaseStart(Timing.Timings timing)
+    {
+        if (PHASES.contains(timing))
+            phaseBytesStart[timing.ordinal()] += allocatedBytes();
+    }
+
+    /**
+     * Counts the bytes allocated by every thread to the end of a phase.
+     *
+     * @param timing The name of the solving process.
+     */
+    public static void phaseEnd(Timing.Timings timing)
+    {
+        if (PHASES.contains(timing))
+            phaseBytesEnd[timing.ordinal()] += allocatedBytes();
+    }
+
+    /**
+     * Records the permutation bytes a group retains, on and off the heap. Called at
+     * the end of a solve, before the groups release their permutations.
+     *
+     * @param group The group to record.
+     */
+    public static synchronized void addGroup(Group group)
+    {
+        if (group.getRetainedBytes() > 0 || group.getOffHeapBytes() > 0)
+            groupBytes.add(new long[] {group.getGroupId(), group.getPermutationCount(),
+                    group.getRetainedBytes(), group.getOffHeapBytes()});
+    }
+
+    /**
+     * Resets the allocation counts, the group table, the peak heap of every heap
+     * pool and the garbage collection baseline.
+     */
+    public static synchronized void reset()
+    {
+        Arrays.fill(phaseBytesStart, 0L);
+        Arrays.fill(phaseBytesEnd, 0L);
+        groupBytes.clear();
+
+        for (MemoryPoolMXBean pool : heapPools)
+            pool.resetPeakUsage();
+
+        for (int i = 0; i < collectors.size(); i++)
+        {
+            gcCountStart[i] = collectors.get(i).getCollectionCount();
+            gcTimeStart[i] = collectors.get(i).getCollectionTime();
+        }
+    }
+
+    /**
+     * Sums the peak usage of the heap pools since the last reset. The pools don't peak
+     * at the same moment, so this is an upper bound of the peak heap used.
+     *
+     * @return The peak heap used in bytes.
+     */
+    public static long getPeakHeapBytes()
+    {
+        long peak = 0L;
+
+        for (MemoryPoolMXBean pool : heapPools)
+            peak += pool.getPeakUsage().getUsed();
+
+        return peak;
+    }
+
+    /**
+     * A method for getting the memory counts in a machine-readable form, keyed by a
+     * fixed metric name. Unlike the Timing counts these vary from run to run.
+     *
+     * @return The memory counts in a fixed order.
+     */
+    public static LinkedHashMap<String, Long> getCounts()
+    {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+        long gcCount = 0L;
+        long gcTime = 0L;
+
+        for (int i = 0; i < collectors.size(); i++)
+        {
+            gcCount += collectors.get(i).getCollectionCount() - gcCountStart[i];
+            gcTime += collectors.get(i).getCollectionTime() - gcTimeStart[i];
+        }
+
+        counts.put("peakHeapBytes", getPeakHeapBytes());
+        counts.put("allocatedBytes", phaseBytes(Timing.Timings.Total));
+        counts.put("gcCount", gcCount);
+        counts.put("gcMillis", gcTime);
+
+        return counts;
+    }
+
+    /**
+     * Writes the memory statistics, after the timings in the timing file.
+     *
+     * @param pw The writer of the timing file.
+     */
+    public static synchronized void write(PrintWriter pw)
+    {
+        pw.printf("%nPeak Heap Used: %s%n", formatBytes(getPeakHeapBytes()));
+
+        if (!threads.isThreadAllocatedMemorySupported())
+            pw.printf("Allocated Bytes: unavailable on this JVM%n");
+        else
+            for (Timing.Timings timing : PHASES)
+                pw.printf("Allocated %s: %s%n", timing, formatBytes(phaseBytes(timing)));
+
+        for (int i = 0; i < collectors.size(); i++)
+            pw.printf("GC %s: Collections: %,d Time: %,d ms%n", collectors.get(i).getName(),
+                    collectors.get(i).getCollectionCount() - gcCountStart[i],
+                    collectors.get(i).getCollectionTime() - gcTimeStart[i]);
+
+        if (groupBytes.isEmpty())
+            return;
+
+        long heapTotal = 0L;
+        long offHeapTotal = 0L;
+
+        pw.printf("%nRetained Permutation Bytes:%n");
+        groupBytes.sort((a, b) -> Long.compare(b[2] + b[3], a[2] + a[3]));
+        for (long[] group : groupBytes)
+        {
+            pw.printf("Group %3d: Permutations: %,10d Heap: %10s Off-Heap: %10s%n", group[0], group[1],
+                    formatBytes(group[2]), formatBytes(group[3]));
+            heapTotal += group[2];
+            offHeapTotal += group[3];
+        }
+        pw.printf("Total: Heap: %s Off-Heap: %s%n", formatBytes(heapTotal), formatBytes(offHeapTotal));
+    }
+
+    private static long phaseBytes(Timing.Timings timing)
+    {
+        return phaseBytesEnd[timing.ordinal()] - phaseBytesStart[timing.ordinal()];
+    }
+
+    /**
+     * Reads the bytes allocated by every thread so far, including the fork-join
+     * threads of parallel generation.
+     *
+     * @return The allocated bytes, 0 if the JVM doesn't count them.
+     */
+    private static long allocatedBytes()
+    {
+        return threads.isThreadAllocatedMemorySupported() ? threads.getTotalThreadAllocatedBytes() : 0L;
+    }
+
+    /**
+     * A method for formatting byte counts into an appropriate unit.
+     *
+     * @param bytes The number of bytes.
+     * @return Bytes formatted to B, KiB, MiB or GiB.
+     */
+    public static String formatBytes(long bytes)
+    {
+        if (bytes < 1L << 10)
+            return bytes + " B";
+        else if (bytes < 1L << 20)
+            return String.format("%.1f KiB", bytes / 1024.0);
+        else if (bytes < 1L << 30)
+            return String.format("%.1f MiB", bytes / (1024.0 * 1024));
+        else
+            return String.format("%.2f GiB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
@@ -0,0 +1,104 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.ArrayList;
+
+/**
+ * Permutation storage outside the Java heap, for the largest groups. The permutations
+ * are kept in direct buffers of CHUNK_SIZE longs each, so a table of tens of millions
+ * of permutations is neither one humongous heap object nor something the garbage
+ * collector has to copy or scan.
+ * <p>
+ * Permutations are only ever appended, in bulk, and then read by index once
+ * generation has finished.
+ */
+public class OffHeapPermutations
+{
+    // Constant for the number of longs in each direct buffer, 8 MiB per buffer.
+    private static final int CHUNK_SHIFT = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private ArrayList<LongBuffer> chunks = new ArrayList<>();
+    private int size = 0;
+
+    /**
+     * Getter for the number of permutations stored.
+     *
+     * @return The number of permutations.
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Gets one permutation.
+     *
+     * @param index The index of the permutation.
+     * @return The permutation, bit i is cell i.
+     */
+    public long get(int index)
+    {
+        return chunks.get(index >>> CHUNK_SHIFT).get(index & CHUNK_MASK);
+    }
+
+    /**
+     * Appends the first count permutations of an array. Synchronized so the searches
+     * of a parallel generation can flush their buffers into the same store, the order
+     * of the permutations doesn't matter to filtering or to the consistent pattern.
+     *
+     * @param permutations The permutations to append.
+     * @param count The number of permutations to append.
+     */
+    public synchronized void append(long[] permutations, int count)
+    {
+        int offset = 0;
+
+        while (offset < count)
+        {
+            LongBuffer chunk = lastChunk();
+            int length = Math.min(count - offset, chunk.remaining());
+
+            chunk.put(permutations, offset, length);
+            offset += length;
+            size += length;
+        }
+    }
+
+    /**
+     * Counts the direct memory held, every buffer is allocated whole so this is the
+     * capacity of the buffers rather than the permutations stored in them.
+     *
+     * @return The bytes of direct memory held by the buffers.
+     */
+    public long getCapacityBytes()
+    {
+        return (long) chunks.size() * CHUNK_SIZE * Long.BYTES;
+    }
+
+    /**
+     * Drops the direct buffers. This doesn't free their memory, which is only freed
+     * once the garbage collector has collected the small buffer objects, at some later
+     * collection. The permutations themselves are never scanned or copied by the
+     * garbage collector.
+     */
+    public void release()
+    {
+        chunks = new ArrayList<>();
+        size = 0;
+    }
+
+    /**
+     * Gets the buffer being appended to, allocating a new one when the last is full.
+     *
+     * @return A buffer with space remaining.
+     */
+    private LongBuffer lastChunk()
+    {
+        if (size == chunks.size() * (long) CHUNK_SIZE)
+            chunks.add(ByteBuffer.allocateDirect(CHUNK_SIZE * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer());
+
+        return chunks.getLast();
+    }
+}
@@ -0,0 +1,268 @@
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * An on-disk cache of the unconstrained permutation tables of lines. The table of a
+ * line only depends on its clues and size, so it is generated once, written to the
+ * cache directory and memory mapped by every later solve and every later process that
+ * sees the same line. A group with no known cells then copies the mapped table instead
+ * of searching for its permutations. A group with known cells searches, as the search
+ * prunes on them and is faster than filtering the whole table.
+ * <p>
+ * Each table is one file of little endian longs named after the size and clues of
+ * the line. Files are written to a temporary name and moved into place, so worker
+ * processes can share a directory. The directory is kept under a size cap by deleting
+ * the least recently used tables, a table is marked used when a process maps it.
+ * <p>
+ * Lookups of different lines run concurrently. A lookup only waits for another one
+ * generating or mapping the same line, and the table is generated by the group's own
+ * permutation search.
+ * <p>
+ * The cache is off until open() is called.
+ */
+public class PermutationCache
+{
+    // Constant for the smallest table worth a file, smaller lines are searched faster than mapped.
+    public static final int MIN_CACHED_PERMUTATIONS = 16384;
+    // Constant for the default size cap of the cache directory, 1 GiB.
+    public static final long DEFAULT_LIMIT_BYTES = 1L << 30;
+
+    private static final String SUFFIX = ".perm";
+
+    private static Path directory;
+    private static long limitBytes;
+    private static int minPermutations;
+    // The tables mapped by this process, by file name.
+    private static final ConcurrentHashMap<String, LongBuffer> mapped = new ConcurrentHashMap<>();
+    // One lock per table file, held while the table is mapped or generated and written.
+    private static final ConcurrentHashMap<String, Object> locks = new ConcurrentHashMap<>();
+    private static final AtomicInteger hits = new AtomicInteger();
+    private static final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Turns the cache on, creating the cache directory if needed.
+     *
+     * @param dir The cache directory.
+     * @param maxBytes The size cap of the cache directory in bytes.
+     * @throws IOException If the directory can't be created.
+     */
+    public static void open(String dir, long maxBytes) throws IOException
+    {
+        open(dir, maxBytes, MIN_CACHED_PERMUTATIONS);
+    }
+
+    /**
+     * Turns the cache on for the lines with at least a number of permutations.
+     *
+     * @param dir The cache directory.
+     * @param maxBytes The size cap of the cache directory in bytes.
+     * @param minCount The fewest permutations of a cached table.
+     * @throws IOException If the directory can't be created.
+     */
+    public static synchronized void open(String dir, long maxBytes, int minCount) throws IOException
+    {
+        directory = Files.createDirectories(Path.of(dir));
+        limitBytes = maxBytes;
+        minPermutations = minCount;
+        mapped.clear();
+    }
+
+    /**
+     * Getter for the state of the cache.
+     *
+     * @return True if open() has been called.
+     */
+    public static boolean isOpen()
+    {
+        return directory != null;
+    }
+
+    /**
+     * Gets the unconstrained permutation table of a line, mapping it from the cache
+     * directory or generating and writing it on a miss. Only lookups of the same line
+     * wait for each other.
+     *
+     * @param clues The clues of the line.
+     * @param size The number of cells in the line.
+     * @param count The number of permutations of the line.
+     * @param generator Generates every permutation of the line on a miss.
+     * @return The table, bit i of a permutation is cell i, or null if the cache is off,
+     *         the table is too small to cache or can't be written.
+     */
+    public static LongBuffer table(int[] clues, int size, int count, Supplier<long[]> generator)
+    {
+        if (directory == null || count < minPermutations)
+            return null;
+
+        String name = fileName(clues, size);
+
+        synchronized (locks.computeIfAbsent(name, key -> new Object()))
+        {
+            LongBuffer table = mapped.get(name);
+
+            if (table != null)
+            {
+                hits.incrementAndGet();
+                return table;
+            }
+
+            Path file = directory.resolve(name);
+
+            try
+            {
+                // A table of the wrong length was cut short by a crash, it is generated again.
+                if (Files.size(file) == (long) count * Long.BYTES)
+                {
+                    table = map(file);
+                    hits.incrementAndGet();
+                }
+            } catch (IOException e)
+            {
+                table = null;
+            }
+
+            try
+            {
+                if (table == null)
+                {
+                    misses.incrementAndGet();
+                    table = write(file, generator.get());
+                    evict();
+                }
+            } catch (IOException e)
+            {
+                System.err.printf("Permutation cache: can't write %s: %s%n", file, e.getMessage());
+                return null;
+            }
+
+            mapped.put(name, table);
+            return table;
+        }
+    }
+
+    /**
+     * A method for getting the lookups served by a table already on disk or mapped.
+     *
+     * @return The cache hits since the cache was opened.
+     */
+    public static int getHits()
+    {
+        return hits.get();
+    }
+
+    /**
+     * A method for getting the lookups that had to generate their table.
+     *
+     * @return The cache misses since the cache was opened.
+     */
+    public static int getMisses()
+    {
+        return misses.get();
+    }
+
+    /**
+     * Names the table file of a line, for example "50-3_1_4.perm".
+     *
+     * @param clues The clues of the line.
+     * @param size The number of cells in the line.
+     * @return The file name.
+     */
+    private static String fileName(int[] clues, int size)
+    {
+        StringBuilder sb = new StringBuilder().append(size).append('-');
+
+        for (int i = 0; i < clues.length; i++)
+        {
+            if (i > 0)
+                sb.append('_');
+            sb.append(clues[i]);
+        }
+
+        return sb.append(SUFFIX).toString();
+    }
+
+    /**
+     * Maps a table file and marks it as recently used.
+     *
+     * @param file The table file.
+     * @return The mapped table.
+     * @throws IOException If the file can't be mapped.
+     */
+    private static LongBuffer map(Path file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+        {
+            LongBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            file.toFile().setLastModified(System.currentTimeMillis());
+            return table;
+        }
+    }
+
+    /**
+     * Writes a table to a temporary file, moves it into place and maps it.
+     *
+     * @param file The table file.
+     * @param permutations The permutations of the table.
+     * @return The mapped table.
+     * @throws IOException If the file can't be written.
+     */
+    private static LongBuffer write(Path file, long[] permutations) throws IOException
+    {
+        ByteBuffer bytes = ByteBuffer.allocate(permutations.length * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asLongBuffer().put(permutations);
+
+        Path temp = Files.createTempFile(directory, "table", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE))
+        {
+            while (bytes.hasRemaining())
+                channel.write(bytes);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return map(file);
+    }
+
+    /**
+     * Deletes the least recently used tables until the cache directory is under its
+     * size cap. The directory is listed again each time, other processes may have
+     * added tables since. Evictions of different lines run one at a time.
+     */
+    private static synchronized void evict()
+    {
+        File[] files = directory.toFile().listFiles((dir, name) -> name.endsWith(SUFFIX));
+
+        if (files == null)
+            return;
+
+        long total = 0L;
+        for (File file : files)
+            total += file.length();
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < files.length && total > limitBytes; i++)
+        {
+            long length = files[i].length();
+
+            // A mapped table stays readable after its file is deleted.
+            if (files[i].delete())
+            {
+                total -= length;
+                mapped.remove(files[i].getName());
+            }
+        }
+    }
+}
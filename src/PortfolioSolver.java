@@ -0,0 +1,229 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Portfolio solver that races several solver configurations on the same puzzle,
+ * each on its own thread. The first configuration to solve the board wins and the
+ * others are cancelled through their cancellation tokens. The winning configuration
+ * of each puzzle is recorded so the best strategy per puzzle can be reviewed.
+ * <p>
+ * The Timing totals are shared by every configuration in the race, so in portfolio
+ * mode they are only a rough sum over all the configurations. They are reset for each
+ * puzzle, and the cancelled configurations are waited for before solve() returns, so
+ * the totals of a puzzle never include work from another puzzle's race.
+ */
+public class PortfolioSolver
+{
+    private static final String RESULTS_FILE = "Portfolio Results.txt";
+
+    private static final List<SolverConfig> DEFAULT_PORTFOLIO = List.of(
+            SolverConfig.DEFAULT,
+            new SolverConfig("eager", SolverConfig.Strategy.LineSolving, 1_000_000, 0.1),
+            new SolverConfig("lazy", SolverConfig.Strategy.LineSolving, 50_000, 0.4),
+            new SolverConfig("search", SolverConfig.Strategy.Search,
+                    SolverConfig.PERMUTATION_LIMIT, SolverConfig.GENERATION_THRESHOLD));
+
+    private final List<SolverConfig> portfolio;
+    private SolverConfig winner;
+    private long winnerNanos;
+
+    /**
+     * Solves each puzzle file given on the command line with the default portfolio,
+     * printing the board and the winning configuration. If no files are given the
+     * user is prompted for one.
+     *
+     * @param args The puzzle file names.
+     */
+    public static void main(String[] args)
+    {
+        ArrayList<String> fileNames = new ArrayList<>(List.of(args));
+
+        if (fileNames.isEmpty())
+            fileNames.add(Util.getFileName());
+
+        PortfolioSolver solver = new PortfolioSolver(DEFAULT_PORTFOLIO);
+
+        for (String fileName : fileNames)
+        {
+            GameBoard gBoard = solver.solve(fileName);
+            long time = solver.getWinnerNanos();
+
+            if (gBoard == null)
+            {
+                System.out.printf("%s: no configuration solved the puzzle%n", fileName);
+                continue;
+            }
+
+            Driver.printGameBoard(gBoard);
+            System.out.printf("%s: solved by %s in %s%n", fileName, solver.getWinner().getName(),
+                    Timing.formatTime(time));
+            recordResult(new File(fileName).getName(), solver.getWinner(), time);
+        }
+    }
+
+    /**
+     * Constructs a PortfolioSolver.
+     *
+     * @param portfolio The solver configurations to race.
+     */
+    public PortfolioSolver(List<SolverConfig> portfolio)
+    {
+        this.portfolio = portfolio;
+    }
+
+    /**
+     * Getter for the configuration that won the last race.
+     *
+     * @return The winning configuration, or null if none solved the puzzle.
+     */
+    public SolverConfig getWinner()
+    {
+        return winner;
+    }
+
+    /**
+     * Getter for the time the last race took to produce its winning board, not
+     * counting the wait for the cancelled configurations to stop.
+     *
+     * @return The time to the winning board in nanoseconds, 0 if none solved the puzzle.
+     */
+    public long getWinnerNanos()
+    {
+        return winnerNanos;
+    }
+
+    /**
+     * Races every configuration of the portfolio on a puzzle. As soon as one
+     * configuration solves the board the rest are cancelled, and it returns once
+     * they have stopped. A configuration that fails is ignored as long as another
+     * one is still running. The Timing counts and generation stats are reset first.
+     *
+     * @param fileName The name of the file containing the board size and clues.
+     * @return The solved game board, or null if every configuration failed.
+     */
+    public GameBoard solve(String fileName)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(portfolio.size());
+        ExecutorCompletionService<GameBoard> completion = new ExecutorCompletionService<>(executor);
+        HashMap<Future<GameBoard>, SolverConfig> configs = new HashMap<>();
+        ArrayList<CancellationToken> tokens = new ArrayList<>();
+
+        winner = null;
+        winnerNanos = 0L;
+        Timing.reset();
+        GenerationStatWriter.reset();
+        long start = System.nanoTime();
+
+        try
+        {
+            for (SolverConfig config : portfolio)
+            {
+                CancellationToken token = new CancellationToken();
+                tokens.add(token);
+                configs.put(completion.submit(() -> solveWith(fileName, config, token)), config);
+            }
+
+            for (int i = 0; i < portfolio.size(); i++)
+            {
+                Future<GameBoard> result = completion.take();
+
+                try
+                {
+                    GameBoard gBoard = result.get();
+                    winnerNanos = System.nanoTime() - start;
+                    winner = configs.get(result);
+                    return gBoard;
+                } catch (ExecutionException e)
+                {
+                    System.err.printf("Configuration %s failed: %s%n", configs.get(result).getName(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        } finally
+        {
+            // The losing configurations stop at their next cancellation check. They
+            // update the shared static stats until then, so they are waited for.
+            for (CancellationToken token : tokens)
+                token.cancel();
+            executor.shutdown();
+            awaitTermination(executor);
+        }
+
+        return null;
+    }
+
+    /**
+     * Waits for the cancelled configurations of a race to stop. If the wait is
+     * interrupted the interrupt is kept and the race is left to stop on its own.
+     *
+     * @param executor The executor of the race, already shut down.
+     */
+    private static void awaitTermination(ExecutorService executor)
+    {
+        try
+        {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+                System.err.println("Waiting for the cancelled configurations to stop");
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Solves a puzzle with one configuration.
+     *
+     * @param fileName The name of the file containing the board size and clues.
+     * @param config The solver configuration.
+     * @param token The token that cancels this configuration.
+     * @return The solved game board, checked against the clues.
+     */
+    private static GameBoard solveWith(String fileName, SolverConfig config, CancellationToken token)
+    {
+        if (config.getStrategy() == SolverConfig.Strategy.Search)
+        {
+            SolutionCounter counter = new SolutionCounter(Util.readFile(fileName), 1, config, token);
+            if (counter.countSolutions() == 0)
+                throw new IllegalStateException("Puzzle has no solution");
+
+            return counter.getFirstSolution();
+        }
+
+        GameBoard gBoard = new Driver(config, token).solve(fileName);
+        if (!Util.boardMatchesClues(gBoard, Util.readFile(fileName)))
+            throw new IllegalStateException("Solved board does not match the clues");
+
+        return gBoard;
+    }
+
+    /**
+     * Appends the winning configuration of a puzzle to the results file.
+     *
+     * @param puzzle The name of the puzzle.
+     * @param winner The winning configuration.
+     * @param nanos The time taken to solve the puzzle.
+     */
+    private static void recordResult(String puzzle, SolverConfig winner, long nanos)
+    {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(RESULTS_FILE, true)))
+        {
+            pw.printf("%s,%s,%d%n", puzzle, winner.getName(), nanos);
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Live progress of a running solve. The solving thread publishes a snapshot of the
+ * board after every iteration of the solving loop, and the reporter shows the latest
+ * snapshot either as a periodic progress log on standard error, on a local HTTP
+ * endpoint in the Prometheus text format, or both.
+ * <p>
+ * Only the published snapshots are read from the reporter threads, so watching a
+ * solve never touches the groups while they are being updated.
+ */
+public class ProgressReporter
+{
+    private ScheduledExecutorService logger;
+    private HttpServer server;
+    private volatile Snapshot latest;
+    private Snapshot lastLogged;
+
+    /**
+     * An immutable view of the solve at the end of one iteration.
+     */
+    private static class Snapshot
+    {
+        final long nanos;
+        final int totalCells;
+        final int unknownCells;
+        final int iterations;
+        final int groups;
+        final int groupsGenerated;
+        final long storedPermutations;
+        final long validPermutations;
+
+        Snapshot(int totalCells, int unknownCells, int iterations, int groups, int groupsGenerated,
+                 long storedPermutations, long validPermutations)
+        {
+            nanos = System.nanoTime();
+            this.totalCells = totalCells;
+            this.unknownCells = unknownCells;
+            this.iterations = iterations;
+            this.groups = groups;
+            this.groupsGenerated = groupsGenerated;
+            this.storedPermutations = storedPermutations;
+            this.validPermutations = validPermutations;
+        }
+    }
+
+    /**
+     * Starts printing a progress line to standard error at a fixed interval.
+     *
+     * @param intervalSeconds The number of seconds between progress lines.
+     */
+    public void startLog(long intervalSeconds)
+    {
+        logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-log");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(this::log, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Starts serving the metrics at http://localhost:port/metrics. The server only
+     * listens on the loopback address.
+     *
+     * @param port The port to listen on.
+     * @throws IOException If the port can't be bound.
+     */
+    public void startServer(int port) throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = metrics().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody())
+            {
+                os.write(body);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * Stops the progress log and the metrics server, printing a final progress line
+     * if the log was running.
+     */
+    public void stop()
+    {
+        if (logger != null)
+        {
+            logger.shutdownNow();
+            log();
+        }
+
+        if (server != null)
+            server.stop(0);
+    }
+
+    /**
+     * Publishes the state of the solve at the end of an iteration. Called from the
+     * solving thread.
+     *
+     * @param gBoard The game board being solved.
+     * @param groups The row and column groups.
+     * @param iterations The number of iterations of the solving loop so far.
+     */
+    public void update(GameBoard gBoard, Group[] groups, int iterations)
+    {
+        int unknownCells = 0;
+        int groupsGenerated = 0;
+        long storedPermutations = 0;
+        long validPermutations = 0;
+
+        for (int i = 0; i < gBoard.getLength(); i++)
+            for (int cell : gBoard.getGBoardRow(i))
+                if (cell == 0)
+                    unknownCells++;
+
+        for (Group group : groups)
+            if (group.getPermutationsGenerated())
+            {
+                groupsGenerated++;
+                storedPermutations += group.getPermutationCount();
+                validPermutations += group.getValidPermutationCount();
+            }
+
+        latest = new Snapshot(gBoard.getWidth() * gBoard.getLength(), unknownCells, iterations, groups.length,
+                groupsGenerated, storedPermutations, validPermutations);
+    }
+
+    /**
+     * Prints one progress line. The solve rate is taken over the interval since the
+     * previous line, so a stalled solve shows a rate of 0.
+     */
+    private synchronized void log()
+    {
+        Snapshot snapshot = latest;
+        if (snapshot == null)
+            return;
+
+        double rate = 0.0;
+        if (lastLogged != null && snapshot.nanos > lastLogged.nanos)
+            rate = (lastLogged.unknownCells - snapshot.unknownCells) * 1e9 / (snapshot.nanos - lastLogged.nanos);
+        lastLogged = snapshot;
+
+        System.err.printf("Progress: %,d/%,d cells unknown, iteration %,d, %d/%d groups generated, "
+                        + "%,d permutations stored, %,d valid, heap %,d MB, %.1f cells/s%n",
+                snapshot.unknownCells, snapshot.totalCells, snapshot.iterations, snapshot.groupsGenerated,
+                snapshot.groups, snapshot.storedPermutations, snapshot.validPermutations, usedHeap() >> 20, rate);
+    }
+
+    /**
+     * Formats the latest snapshot in the Prometheus text format. The solve rate is
+     * left to the scraper, as rate() of nonogram_cells_solved_total.
+     *
+     * @return The metrics text.
+     */
+    private String metrics()
+    {
+        StringBuilder sb = new StringBuilder();
+        Snapshot snapshot = latest;
+
+        if (snapshot != null)
+        {
+            appendMetric(sb, "nonogram_cells_unknown", "gauge", "Cells not solved yet.", snapshot.unknownCells);
+            appendMetric(sb, "nonogram_cells_solved_total", "counter", "Cells solved so far.",
+                    snapshot.totalCells - snapshot.unknownCells);
+            appendMetric(sb, "nonogram_iterations_total", "counter", "Iterations of the solving loop.",
+                    snapshot.iterations);
+            appendMetric(sb, "nonogram_groups_generated", "gauge", "Groups that have generated permutations.",
+                    snapshot.groupsGenerated);
+            appendMetric(sb, "nonogram_permutations_stored", "gauge", "Permutations stored by all groups.",
+                    snapshot.storedPermutations);
+            appendMetric(sb, "nonogram_permutations_valid", "gauge", "Stored permutations still valid.",
+                    snapshot.validPermutations);
+        }
+
+        appendMetric(sb, "nonogram_heap_used_bytes", "gauge", "Heap used by the solver JVM.", usedHeap());
+
+        return sb.toString();
+    }
+
+    private static void appendMetric(StringBuilder sb, String name, String type, String help, long value)
+    {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static long usedHeap()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,246 @@
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Generates random Nonogram puzzles from a seed, writing them in the same format
+ * read by Util.readFile(). Boards are filled at random to a given density and the
+ * clues are taken from the filled board. The same seed and settings always produce
+ * the same puzzles, giving a reproducible set of puzzles for benchmarking.
+ */
+public class PuzzleGenerator
+{
+    // Number of boards tried for each puzzle before giving up when filtering.
+    private static final int MAX_ATTEMPTS = 1000;
+    // Longest side of a puzzle, the solver keeps each line in a long bitmask.
+    private static final int MAX_SIDE = 63;
+
+    enum Filter {None, LineSolvable, Unique}
+
+    private final Random random;
+    private final Filter filter;
+
+    /**
+     * Generates puzzles for every combination of the sizes and densities given on
+     * the command line.
+     *
+     * @param args "-seed n", "-size WxL" (repeatable, sides up to 63), "-density d" (repeatable),
+     *             "-count n", "-filter none|line|unique" and "-out directory".
+     */
+    public static void main(String[] args)
+    {
+        long seed = 1L;
+        int count = 1;
+        Filter filter = Filter.None;
+        String outDirectory = "generated";
+        ArrayList<int[]> sizes = new ArrayList<>();
+        ArrayList<Double> densities = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-seed" -> seed = Long.parseLong(args[++i]);
+                case "-size" ->
+                {
+                    String[] size = args[++i].split("x");
+                    int width = size.length == 2 ? Integer.parseInt(size[0]) : 0;
+                    int length = size.length == 2 ? Integer.parseInt(size[1]) : 0;
+
+                    if (width < 1 || width > MAX_SIDE || length < 1 || length > MAX_SIDE)
+                        throw new IllegalArgumentException(String.format(
+                                "Size must be WxL with sides from 1 to %d: %s", MAX_SIDE, args[i]));
+                    sizes.add(new int[] {width, length});
+                }
+                case "-density" -> densities.add(Double.parseDouble(args[++i]));
+                case "-count" -> count = Integer.parseInt(args[++i]);
+                case "-filter" -> filter = switch (args[++i])
+                {
+                    case "none" -> Filter.None;
+                    case "line" -> Filter.LineSolvable;
+                    case "unique" -> Filter.Unique;
+                    default -> throw new IllegalArgumentException("Unknown filter: " + args[i]);
+                };
+                case "-out" -> outDirectory = args[++i];
+                default -> throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        if (sizes.isEmpty())
+            sizes.add(new int[] {25, 25});
+        if (densities.isEmpty())
+            densities.add(0.5);
+
+        new File(outDirectory).mkdirs();
+        PuzzleGenerator generator = new PuzzleGenerator(seed, filter);
+
+        for (int[] size : sizes)
+            for (double density : densities)
+                for (int i = 0; i < count; i++)
+                {
+                    ArrayList<int[]> puzzle = generator.generate(size[0], size[1], density);
+
+                    if (puzzle == null)
+                    {
+                        System.err.printf("No %s puzzle found for %dx%d density %.2f after %d attempts%n",
+                                filter, size[0], size[1], density, MAX_ATTEMPTS);
+                        continue;
+                    }
+
+                    String fileName = String.format("%s/%dx%d d%.2f s%d %03d.txt",
+                            outDirectory, size[0], size[1], density, seed, i);
+                    writePuzzle(fileName, puzzle);
+                    System.out.println(fileName);
+                }
+    }
+
+    /**
+     * Constructs a PuzzleGenerator.
+     *
+     * @param seed The seed for the random number generator.
+     * @param filter Which puzzles to keep.
+     */
+    public PuzzleGenerator(long seed, Filter filter)
+    {
+        random = new Random(seed);
+        this.filter = filter;
+    }
+
+    /**
+     * Generates a random puzzle that passes the filter.
+     *
+     * @param width The width of the board.
+     * @param length The length of the board.
+     * @param density The chance of each cell being filled.
+     * @return The puzzle in the format returned by Util.readFile(), or null if no
+     *         puzzle passing the filter was found.
+     */
+    public ArrayList<int[]> generate(int width, int length, double density)
+    {
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++)
+        {
+            ArrayList<int[]> puzzle = cluesFromBoard(randomBoard(width, length, density));
+
+            if (filter == Filter.None
+                    || filter == Filter.LineSolvable && new SolutionCounter(puzzle, 1).isLineSolvable()
+                    || filter == Filter.Unique && new SolutionCounter(puzzle, 2).countSolutions() == 1)
+                return puzzle;
+        }
+
+        return null;
+    }
+
+    /**
+     * Fills a board at random, each cell is filled (1) with the chance given by
+     * the density and is otherwise blank (-1).
+     *
+     * @param width The width of the board.
+     * @param length The length of the board.
+     * @param density The chance of each cell being filled.
+     * @return The filled board, indexed by row then column.
+     */
+    private int[][] randomBoard(int width, int length, double density)
+    {
+        int[][] board = new int[length][width];
+
+        for (int i = 0; i < length; i++)
+            for (int j = 0; j < width; j++)
+                board[i][j] = random.nextDouble() < density ? 1 : -1;
+
+        return board;
+    }
+
+    /**
+     * Creates the clues of a filled board.
+     *
+     * @param board The filled board, indexed by row then column.
+     * @return The grid size followed by the row clues and then the column clues.
+     */
+    public static ArrayList<int[]> cluesFromBoard(int[][] board)
+    {
+        int length = board.length;
+        int width = board[0].length;
+        ArrayList<int[]> puzzle = new ArrayList<>();
+        int[] line = new int[length];
+
+        puzzle.add(new int[] {width, length});
+
+        for (int[] row : board)
+            puzzle.add(lineClues(row));
+
+        for (int j = 0; j < width; j++)
+        {
+            for (int i = 0; i < length; i++)
+                line[i] = board[i][j];
+
+            puzzle.add(lineClues(line));
+        }
+
+        return puzzle;
+    }
+
+    /**
+     * Creates the clues of a filled line, the lengths of each run of filled cells.
+     * An empty line has the single clue 0.
+     *
+     * @param line The filled line.
+     * @return The clues of the line.
+     */
+    private static int[] lineClues(int[] line)
+    {
+        ArrayList<Integer> runs = new ArrayList<>();
+        int run = 0;
+
+        for (int cell : line)
+        {
+            if (cell == 1)
+                run++;
+            else if (run > 0)
+            {
+                runs.add(run);
+                run = 0;
+            }
+        }
+
+        if (run > 0 || runs.isEmpty())
+            runs.add(run);
+
+        int[] clues = new int[runs.size()];
+        for (int i = 0; i < clues.length; i++)
+            clues[i] = runs.get(i);
+
+        return clues;
+    }
+
+    /**
+     * Writes a puzzle to a file, one comma separated line per entry.
+     *
+     * @param fileName The name of the file to write.
+     * @param puzzle The grid size followed by the row clues and then the column clues.
+     */
+    public static void writePuzzle(String fileName, ArrayList<int[]> puzzle)
+    {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(fileName)))
+        {
+            for (int[] line : puzzle)
+            {
+                StringBuilder sb = new StringBuilder();
+
+                for (int i = 0; i < line.length; i++)
+                {
+                    if (i > 0)
+                        sb.append(',');
+                    sb.append(line[i]);
+                }
+
+                pw.println(sb);
+            }
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,301 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Performance regression runner. Solves a fixed corpus of puzzles, checks every
+ * solution against a stored golden board and compares the wall time and solving
+ * counts of each puzzle against a baseline file. Any wrong solution or any count
+ * that grew by more than the tolerance fails the run with a non-zero exit code.
+ * Wall time varies too much from run to run to fail on, so by default it is only
+ * reported, a time tolerance makes it fail the run as well.
+ * <p>
+ * The baseline is a CSV file with one row per puzzle and one column per metric.
+ * Running with -update records the current metrics as the new baseline and stores
+ * a golden board for any puzzle that doesn't have one.
+ */
+public class RegressionSuite
+{
+    // Puzzles solved when no puzzle files are given on the command line.
+    private static final List<String> DEFAULT_CORPUS = List.of("25x25 Nonogram.txt", "30x30 nonogram.txt",
+            "50x50 nonogram 2.txt", "50x50 nonogram 3.txt", "50x50 nonogram 4.txt", "50x50 nonogram 5.txt");
+    private static final String WALL_TIME = "wallTimeNanos";
+
+    private String directory = "regression";
+    private String baselineFile = "regression/baseline.csv";
+    private double tolerance = 0.0;
+    // The wall time growth that fails the run, negative to only report it.
+    private double timeTolerance = -1.0;
+    private int runs = 3;
+    private boolean update = false;
+
+    /**
+     * Runs the regression suite.
+     *
+     * @param args "-baseline file", "-golden directory", "-tolerance fraction" for the
+     *             counts, "-timeTolerance fraction" to fail on the wall time, "-runs n",
+     *             "-update" and then the puzzle files, the default corpus if none.
+     */
+    public static void main(String[] args)
+    {
+        RegressionSuite suite = new RegressionSuite();
+        ArrayList<String> corpus = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-baseline" -> suite.baselineFile = args[++i];
+                case "-golden" -> suite.directory = args[++i];
+                case "-tolerance" -> suite.tolerance = Double.parseDouble(args[++i]);
+                case "-timeTolerance" -> suite.timeTolerance = Double.parseDouble(args[++i]);
+                case "-runs" -> suite.runs = Integer.parseInt(args[++i]);
+                case "-update" -> suite.update = true;
+                default -> corpus.add(args[i]);
+            }
+        }
+
+        if (corpus.isEmpty())
+            corpus.addAll(DEFAULT_CORPUS);
+
+        if (!suite.run(corpus))
+            System.exit(1);
+    }
+
+    /**
+     * Solves every puzzle of the corpus, checks the solutions and compares the
+     * metrics against the baseline, or records a new baseline when updating.
+     *
+     * @param corpus The puzzle files to solve.
+     * @return True if every solution was correct and no metric regressed.
+     */
+    public boolean run(List<String> corpus)
+    {
+        LinkedHashMap<String, LinkedHashMap<String, Long>> baseline = readBaseline();
+        LinkedHashMap<String, LinkedHashMap<String, Long>> results = new LinkedHashMap<>();
+        boolean passed = true;
+
+        new File(directory).mkdirs();
+
+        for (String fileName : corpus)
+        {
+            String puzzle = new File(fileName).getName();
+            LinkedHashMap<String, Long> metrics = new LinkedHashMap<>();
+            GameBoard gBoard = null;
+            long bestTime = Long.MAX_VALUE;
+
+            // The counts are the same every run, the fastest wall time is kept.
+            for (int i = 0; i < runs; i++)
+            {
+                Timing.reset();
+                long start = System.nanoTime();
+                gBoard = new Driver().solve(fileName);
+                bestTime = Math.min(bestTime, System.nanoTime() - start);
+            }
+
+            metrics.put(WALL_TIME, bestTime);
+            metrics.putAll(Timing.getCounts());
+            results.put(puzzle, metrics);
+
+            if (!checkSolution(fileName, puzzle, gBoard))
+            {
+                System.out.printf("FAIL %s: solution does not match the golden board%n", puzzle);
+                passed = false;
+            }
+
+            System.out.printf("%s: %s%n", puzzle, Timing.formatTime(bestTime));
+
+            if (!update)
+                passed &= compare(puzzle, metrics, baseline.get(puzzle));
+        }
+
+        if (update)
+        {
+            writeBaseline(results);
+            System.out.println("Baseline written to " + baselineFile);
+        }
+
+        System.out.println(passed ? "PASSED" : "FAILED");
+        return passed;
+    }
+
+    /**
+     * Compares the metrics of a puzzle against its baseline, printing any metric
+     * that grew by more than its tolerance.
+     *
+     * @param puzzle The name of the puzzle.
+     * @param metrics The metrics of this run.
+     * @param baseline The baseline metrics of the puzzle, or null if there are none.
+     * @return True if no metric regressed.
+     */
+    private boolean compare(String puzzle, LinkedHashMap<String, Long> metrics, LinkedHashMap<String, Long> baseline)
+    {
+        if (baseline == null)
+        {
+            System.out.printf("  no baseline for %s%n", puzzle);
+            return true;
+        }
+
+        boolean passed = true;
+
+        for (String metric : metrics.keySet())
+        {
+            Long expected = baseline.get(metric);
+            if (expected == null)
+                continue;
+
+            long actual = metrics.get(metric);
+            double change = (actual - expected) * 100.0 / Math.max(expected, 1);
+
+            if (metric.equals(WALL_TIME) && timeTolerance < 0)
+                System.out.printf("  %s: %,d, baseline %,d (%+.1f%%)%n", metric, actual, expected, change);
+            else if (actual > expected * (1 + (metric.equals(WALL_TIME) ? timeTolerance : tolerance)))
+            {
+                System.out.printf("  FAIL %s: %,d > baseline %,d (+%.1f%%)%n", metric, actual, expected, change);
+                passed = false;
+            }
+        }
+
+        return passed;
+    }
+
+    /**
+     * Checks a solved board against the golden board of the puzzle. If there is no
+     * golden board the solution is checked against the clues instead, and stored as
+     * the golden board when updating.
+     *
+     * @param fileName The puzzle file.
+     * @param puzzle The name of the puzzle.
+     * @param gBoard The solved game board.
+     * @return True if the solution is correct.
+     */
+    private boolean checkSolution(String fileName, String puzzle, GameBoard gBoard)
+    {
+        File golden = new File(directory, puzzle + ".solution");
+        ArrayList<String> rows = boardRows(gBoard);
+
+        if (golden.exists())
+            return rows.equals(readLines(golden));
+
+        if (!Util.boardMatchesClues(gBoard, Util.readFile(fileName)))
+            return false;
+
+        if (update)
+            writeLines(golden, rows);
+
+        return true;
+    }
+
+    /**
+     * Converts each row of a game board to text, # for a filled cell and . for a blank.
+     *
+     * @param gBoard The game board.
+     * @return The rows of the game board.
+     */
+    private static ArrayList<String> boardRows(GameBoard gBoard)
+    {
+        ArrayList<String> rows = new ArrayList<>();
+
+        for (int i = 0; i < gBoard.getLength(); i++)
+        {
+            StringBuilder sb = new StringBuilder();
+
+            for (int cell : gBoard.getGBoardRow(i))
+                sb.append(cell == 1 ? '#' : '.');
+
+            rows.add(sb.toString());
+        }
+
+        return rows;
+    }
+
+    /**
+     * Reads the baseline file, a header of metric names followed by one row per puzzle.
+     *
+     * @return The baseline metrics by puzzle, empty if there is no baseline file.
+     */
+    private LinkedHashMap<String, LinkedHashMap<String, Long>> readBaseline()
+    {
+        LinkedHashMap<String, LinkedHashMap<String, Long>> baseline = new LinkedHashMap<>();
+        File file = new File(baselineFile);
+
+        if (!file.exists())
+            return baseline;
+
+        ArrayList<String> lines = readLines(file);
+        String[] header = lines.getFirst().split(",");
+
+        for (String line : lines.subList(1, lines.size()))
+        {
+            String[] values = line.split(",");
+            LinkedHashMap<String, Long> metrics = new LinkedHashMap<>();
+
+            for (int i = 1; i < values.length && i < header.length; i++)
+                metrics.put(header[i], Long.parseLong(values[i]));
+
+            baseline.put(values[0], metrics);
+        }
+
+        return baseline;
+    }
+
+    /**
+     * Writes the metrics of every puzzle to the baseline file.
+     *
+     * @param results The metrics by puzzle.
+     */
+    private void writeBaseline(LinkedHashMap<String, LinkedHashMap<String, Long>> results)
+    {
+        ArrayList<String> lines = new ArrayList<>();
+        ArrayList<String> header = new ArrayList<>(List.of("puzzle"));
+        header.addAll(results.values().iterator().next().keySet());
+        lines.add(String.join(",", header));
+
+        for (String puzzle : results.keySet())
+        {
+            StringBuilder sb = new StringBuilder(puzzle);
+
+            for (long value : results.get(puzzle).values())
+                sb.append(',').append(value);
+
+            lines.add(sb.toString());
+        }
+
+        writeLines(new File(baselineFile), lines);
+    }
+
+    private static ArrayList<String> readLines(File file)
+    {
+        ArrayList<String> lines = new ArrayList<>();
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file)))
+        {
+            String line;
+            while ((line = br.readLine()) != null)
+                lines.add(line);
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        return lines;
+    }
+
+    private static void writeLines(File file, List<String> lines)
+    {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(file)))
+        {
+            for (String line : lines)
+                pw.println(line);
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,446 @@
+import java.util.ArrayList;
+
+/**
+ * Counts the solutions of Nonogram puzzles up to a limit, used to validate that a
+ * puzzle has exactly one solution. The Group line solving is used to propagate
+ * solved cells until it stalls, then an unknown cell is guessed both ways and each
+ * guess is searched in turn. The search stops as soon as the limit is reached.
+ */
+public class SolutionCounter
+{
+    // Default number of solutions to stop at, two is enough to know a puzzle isn't unique.
+    private static final int DEFAULT_LIMIT = 2;
+
+    enum Result {None, Unique, Multiple}
+
+    private final Group[] groups;
+    private final int[][] clues;
+    private final int width, length;
+    // Reused to read each column of the game board.
+    private final int[] columnBuffer;
+    private final int limit;
+    private final CancellationToken token;
+    private int solutionCount = 0;
+    private GameBoard firstSolution;
+
+    /**
+     * Counts the solutions of each puzzle file given on the command line and prints
+     * whether the puzzle is unique, has multiple solutions or has none. If no files
+     * are given the user is prompted for one.
+     *
+     * @param args Optionally "-limit n" followed by the puzzle file names.
+     * @throws IllegalArgumentException If the limit is missing or isn't a positive number.
+     */
+    public static void main(String[] args)
+    {
+        int limit = DEFAULT_LIMIT;
+        ArrayList<String> fileNames = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-limit" -> limit = parseLimit(args, ++i);
+                default -> fileNames.add(args[i]);
+            }
+        }
+
+        if (fileNames.isEmpty())
+            fileNames.add(Util.getFileName());
+
+        for (String fileName : fileNames)
+        {
+            long start = System.nanoTime();
+            ArrayList<int[]> fileContents = Util.readFile(fileName);
+
+            if (fileContents.isEmpty())
+                continue;
+
+            SolutionCounter counter = new SolutionCounter(fileContents, limit);
+            int count = counter.countSolutions();
+            long end = System.nanoTime();
+
+            System.out.printf("%s: %s, %d solution(s) found (limit %d) in %s%n", fileName,
+                    counter.getResult(), count, limit, Timing.formatTime(end - start));
+        }
+    }
+
+    /**
+     * Reads the value of "-limit" from the command line.
+     *
+     * @param args The command line arguments.
+     * @param i The index of the value.
+     * @return The number of solutions to stop at.
+     * @throws IllegalArgumentException If the value is missing or isn't a positive number.
+     */
+    private static int parseLimit(String[] args, int i)
+    {
+        if (i >= args.length)
+            throw new IllegalArgumentException("Usage: -limit n, the number of solutions to stop at");
+
+        try
+        {
+            int limit = Integer.parseInt(args[i]);
+            if (limit > 0)
+                return limit;
+        } catch (NumberFormatException e)
+        {
+            // Reported below with the other invalid limits.
+        }
+
+        throw new IllegalArgumentException("Usage: -limit n, the number of solutions to stop at, not " + args[i]);
+    }
+
+    /**
+     * Constructs a SolutionCounter for the puzzle described by the file contents.
+     *
+     * @param fileContents The list of clue lines, with the first entry representing
+     *                     the grid size.
+     * @param limit The number of solutions to stop searching at.
+     */
+    public SolutionCounter(ArrayList<int[]> fileContents, int limit)
+    {
+        this(fileContents, limit, SolverConfig.DEFAULT, CancellationToken.NONE);
+    }
+
+    /**
+     * Constructs a SolutionCounter for the puzzle described by the file contents,
+     * using a solver configuration. The search stops with a CancellationException
+     * once the cancellation token is cancelled.
+     *
+     * @param fileContents The list of clue lines, with the first entry representing
+     *                     the grid size.
+     * @param limit The number of solutions to stop searching at.
+     * @param config The solver configuration used by the groups.
+     * @param token The token checked every propagation pass.
+     */
+    public SolutionCounter(ArrayList<int[]> fileContents, int limit, SolverConfig config, CancellationToken token)
+    {
+        this.token = token;
+
+        int[] gridSize = fileContents.getFirst();
+
+        width = gridSize[0];
+        length = gridSize[1];
+        this.limit = limit;
+
+        groups = new Group[width + length];
+        clues = new int[width + length][];
+        columnBuffer = new int[length];
+
+        // Creating group objects for all the rows and then all the columns.
+        for (int i = 0; i < groups.length; i++)
+        {
+            clues[i] = fileContents.get(i + 1);
+            groups[i] = new Group(clues[i], i < length ? width : length, i, config, token);
+        }
+    }
+
+    /**
+     * Counts the solutions of the puzzle, stopping once the limit is reached.
+     *
+     * @return The number of solutions found, at most the limit.
+     */
+    public int countSolutions()
+    {
+        try
+        {
+            search(overlapBoard());
+        } finally
+        {
+            releasePermutations();
+        }
+
+        return solutionCount;
+    }
+
+    /**
+     * Checks if the puzzle can be solved by line solving alone, without guessing.
+     *
+     * @return True if propagating the clues solves every cell of the board.
+     */
+    public boolean isLineSolvable()
+    {
+        GameBoard gBoard = overlapBoard();
+
+        try
+        {
+            return propagate(gBoard) && gBoard.isSolved() && matchesClues(gBoard);
+        } finally
+        {
+            releasePermutations();
+        }
+    }
+
+    private void releasePermutations()
+    {
+        for (Group group : groups)
+            group.releasePermutations();
+    }
+
+    /**
+     * Creates the starting game board with the overlap of every row and column set.
+     *
+     * @return The game board after applying overlap.
+     */
+    private GameBoard overlapBoard()
+    {
+        GameBoard gBoard = new GameBoard(width, length);
+
+        for (int i = 0; i < length; i++)
+            gBoard.setGBoardRow(groups[i].overlap(), i);
+
+        for (int i = 0; i < width; i++)
+            gBoard.setGBoardColumn(groups[i + length].overlap(), i);
+
+        return gBoard;
+    }
+
+    /**
+     * Classifies the puzzle from the number of solutions found.
+     *
+     * @return None, Unique or Multiple.
+     */
+    public Result getResult()
+    {
+        if (solutionCount == 0)
+            return Result.None;
+        else if (solutionCount == 1)
+            return Result.Unique;
+        else
+            return Result.Multiple;
+    }
+
+    /**
+     * Getter for the first solution found.
+     *
+     * @return The first solved game board, or null if there is no solution.
+     */
+    public GameBoard getFirstSolution()
+    {
+        return firstSolution;
+    }
+
+    /**
+     * Propagates the game board and, if it is not solved, guesses an unknown cell as
+     * filled and then as blank, searching each guess. The groups are restored to their
+     * state before the guess once each guess has been searched.
+     *
+     * @param gBoard The game board to search from.
+     */
+    private void search(GameBoard gBoard)
+    {
+        if (!propagate(gBoard))
+            return;
+
+        int[] cell = guessCell(gBoard);
+
+        if (cell == null)
+        {
+            if (matchesClues(gBoard))
+            {
+                if (solutionCount == 0)
+                    firstSolution = gBoard;
+                solutionCount++;
+            }
+            return;
+        }
+
+        Group.State[] savedStates = new Group.State[groups.length];
+        for (int i = 0; i < groups.length; i++)
+            savedStates[i] = groups[i].saveState();
+
+        for (int value : new int[] {1, -1})
+        {
+            if (solutionCount >= limit)
+                break;
+
+            GameBoard guess = new GameBoard(gBoard);
+            guess.setCell(cell[0], cell[1], value);
+            search(guess);
+
+            for (int i = 0; i < groups.length; i++)
+                groups[i].restoreState(savedStates[i]);
+        }
+    }
+
+    /**
+     * Updates the marked rows and columns until no more cells can be solved, forcing
+     * the lowest-cost group to generate whenever nothing is marked. Stops as soon as
+     * a group has no valid permutation left or a deduction conflicts with the board.
+     * A guess that leads to a contradiction is not an error, it only ends that branch.
+     *
+     * @param gBoard The game board to propagate.
+     * @return False if the game board was found to have no solution.
+     */
+    private boolean propagate(GameBoard gBoard)
+    {
+        try
+        {
+            return propagateLines(gBoard);
+        } catch (ContradictionException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * The propagation loop of propagate(). A contradiction found by a group or by
+     * the game board is thrown as a ContradictionException.
+     *
+     * @param gBoard The game board to propagate.
+     * @return False if the game board was found to have no solution.
+     */
+    private boolean propagateLines(GameBoard gBoard)
+    {
+        while (true)
+        {
+            token.throwIfCancelled();
+            boolean updated = false;
+
+            for (int i = 0; i < length; i++)
+                if (gBoard.getRowsToUpdate()[i] == 1)
+                {
+                    updated = true;
+                    int[] partial = gBoard.getGBoardRow(i);
+                    int[] result = groups[i].updateGroup(partial, gBoard.getRowFilledChanges(i),
+                            gBoard.getRowBlankChanges(i));
+
+                    if (groups[i].hasNoValidPermutations() || conflicts(partial, result))
+                        return false;
+                    gBoard.setGBoardRow(result, i);
+                }
+            gBoard.resetRowsToUpdate();
+
+            for (int i = 0; i < width; i++)
+                if (gBoard.getColumnsToUpdate()[i] == 1)
+                {
+                    updated = true;
+                    int[] partial = gBoard.getGBoardColumn(i, columnBuffer);
+                    int[] result = groups[i + length].updateGroup(partial, gBoard.getColumnFilledChanges(i),
+                            gBoard.getColumnBlankChanges(i));
+
+                    if (groups[i + length].hasNoValidPermutations() || conflicts(partial, result))
+                        return false;
+                    gBoard.setGBoardColumn(result, i);
+                }
+            gBoard.resetColumnsToUpdate();
+
+            if (updated)
+                continue;
+
+            Group group = lowCostGroup();
+            if (group == null)
+                return true;
+
+            int id = group.getGroupId();
+            if (id < length)
+            {
+                int[] partial = gBoard.getGBoardRow(id);
+                int[] result = group.forceGeneration(partial);
+
+                if (group.hasNoValidPermutations() || conflicts(partial, result))
+                    return false;
+                gBoard.setGBoardRow(result, id);
+            }
+            else
+            {
+                int[] partial = gBoard.getGBoardColumn(id - length, columnBuffer);
+                int[] result = group.forceGeneration(partial);
+
+                if (group.hasNoValidPermutations() || conflicts(partial, result))
+                    return false;
+                gBoard.setGBoardColumn(result, id - length);
+            }
+        }
+    }
+
+    /**
+     * Selects the group with the lowest maximum permutation count that hasn't yet
+     * generated its permutations.
+     *
+     * @return The lowest-cost group to generate next, or null if all are generated.
+     */
+    private Group lowCostGroup()
+    {
+        Group bestGroup = null;
+
+        for (Group group : groups)
+            if (!group.getPermutationsGenerated()
+                    && (bestGroup == null || group.getMaxPermutationCount() < bestGroup.getMaxPermutationCount()))
+                bestGroup = group;
+
+        return bestGroup;
+    }
+
+    /**
+     * Chooses the unknown cell to guess, the first unknown cell of the row with
+     * the fewest unknown cells.
+     *
+     * @param gBoard The game board to choose a cell from.
+     * @return The row and column of the cell, or null if the board is solved.
+     */
+    private int[] guessCell(GameBoard gBoard)
+    {
+        int[] cell = null;
+        int fewestUnknown = Integer.MAX_VALUE;
+
+        for (int i = 0; i < length; i++)
+        {
+            int[] row = gBoard.getGBoardRow(i);
+            int unknown = 0;
+            int firstUnknown = -1;
+
+            for (int j = 0; j < row.length; j++)
+                if (row[j] == 0)
+                {
+                    if (firstUnknown < 0)
+                        firstUnknown = j;
+                    unknown++;
+                }
+
+            if (unknown > 0 && unknown < fewestUnknown)
+            {
+                fewestUnknown = unknown;
+                cell = new int[] {i, firstUnknown};
+            }
+        }
+
+        return cell;
+    }
+
+    /**
+     * Checks if a group's deductions changed a cell that was already solved.
+     *
+     * @param partial The line before the update.
+     * @param result The line returned by the group.
+     * @return True if a solved cell was given a different value.
+     */
+    private static boolean conflicts(int[] partial, int[] result)
+    {
+        for (int i = 0; i < partial.length; i++)
+            if (partial[i] != 0 && result[i] != partial[i])
+                return true;
+
+        return false;
+    }
+
+    /**
+     * Checks every row and column of a solved game board against its clues.
+     *
+     * @param gBoard The solved game board.
+     * @return True if every line matches its clues.
+     */
+    private boolean matchesClues(GameBoard gBoard)
+    {
+        for (int i = 0; i < length; i++)
+            if (!Util.lineMatchesClues(gBoard.getGBoardRow(i), clues[i]))
+                return false;
+
+        for (int i = 0; i < width; i++)
+            if (!Util.lineMatchesClues(gBoard.getGBoardColumn(i, length), clues[i + length]))
+                return false;
+
+        return true;
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * A time and iteration budget for one solve. The budget is a cancellation token, so
+ * it is checked by the same cooperative checks as cancellation: every iteration of
+ * the solving loop and every 65,536 attempts of a permutation search. It also passes
+ * on the cancellation of the token it was made from.
+ * <p>
+ * The time budget starts when the budget is constructed. A limit of 0 is no limit.
+ */
+public class SolveBudget extends CancellationToken
+{
+    private final CancellationToken parent;
+    private final long deadline;
+    private final int iterationLimit;
+    private final boolean timeLimited;
+
+    /**
+     * Constructs a SolveBudget, starting its time budget.
+     *
+     * @param parent The token whose cancellation also stops the solve.
+     * @param timeLimitNanos The time the solve may take in nanoseconds, 0 for no limit.
+     * @param iterationLimit The iterations of the solving loop the solve may take, 0 for no limit.
+     */
+    public SolveBudget(CancellationToken parent, long timeLimitNanos, int iterationLimit)
+    {
+        this.parent = parent;
+        this.timeLimited = timeLimitNanos > 0;
+        this.deadline = System.nanoTime() + timeLimitNanos;
+        this.iterationLimit = iterationLimit;
+    }
+
+    /**
+     * Checks if the solve should stop, because the parent token was cancelled, this
+     * budget was cancelled or the time budget has run out.
+     *
+     * @return True if the solve using this budget should stop.
+     */
+    @Override
+    public boolean isCancelled()
+    {
+        return super.isCancelled() || parent.isCancelled() || isTimeExhausted();
+    }
+
+    /**
+     * Checks if the time budget has run out. Unlike isCancelled() this is false when
+     * the solve was only cancelled, so a cancelled solve can be told apart from one
+     * that ran out of time.
+     *
+     * @return True if the deadline has passed.
+     */
+    public boolean isTimeExhausted()
+    {
+        return timeLimited && System.nanoTime() - deadline >= 0;
+    }
+
+    /**
+     * Checks if the iteration budget has run out.
+     *
+     * @param iterations The iterations of the solving loop completed so far.
+     * @return True if no more iterations may be started.
+     */
+    public boolean isIterationLimitReached(int iterations)
+    {
+        return iterationLimit > 0 && iterations >= iterationLimit;
+    }
+}
@@ -0,0 +1,245 @@
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Records every group operation of a solve to a trace file, so the exact line updates
+ * of a puzzle can be replayed on their own by TraceReplay. A trace starts with the
+ * Config record of the thresholds the groups were built with and one Group record per
+ * row and column, followed by the Overlap, Update and Force records in the order the
+ * Driver performed them. Traces without a Config record were built with the defaults.
+ * <p>
+ * Records are tab separated. Lines are written with # for a filled cell, . for a blank
+ * and ? for an unknown, the changed cells of an update as hexadecimal bitmasks:
+ * <pre>
+ * Config   permutationLimit  generationThreshold
+ * Group    id  size     clues
+ * Overlap  id  result
+ * Update   id  partial  filledChanges  blankChanges  result  strategy
+ * Force    id  partial  result         strategy
+ * </pre>
+ */
+public class SolveTrace implements Closeable
+{
+    public enum Operation {Config, Group, Overlap, Update, Force}
+
+    private final PrintWriter pw;
+
+    /**
+     * One operation read back from a trace file. Fields that the operation doesn't
+     * use are null or 0.
+     */
+    public static class Record
+    {
+        final Operation operation;
+        final int groupId;
+        final int size;
+        final int[] clues;
+        final int[] partial;
+        final long filledChanges;
+        final long blankChanges;
+        final int[] result;
+        final String strategy;
+        final int permutationLimit;
+        final double generationThreshold;
+
+        private Record(Operation operation, int groupId, int size, int[] clues, int[] partial,
+                       long filledChanges, long blankChanges, int[] result, String strategy)
+        {
+            this.operation = operation;
+            this.groupId = groupId;
+            this.size = size;
+            this.clues = clues;
+            this.partial = partial;
+            this.filledChanges = filledChanges;
+            this.blankChanges = blankChanges;
+            this.result = result;
+            this.strategy = strategy;
+            this.permutationLimit = 0;
+            this.generationThreshold = 0.0;
+        }
+
+        private Record(int permutationLimit, double generationThreshold)
+        {
+            this.operation = Operation.Config;
+            this.groupId = -1;
+            this.size = 0;
+            this.clues = null;
+            this.partial = null;
+            this.filledChanges = 0L;
+            this.blankChanges = 0L;
+            this.result = null;
+            this.strategy = null;
+            this.permutationLimit = permutationLimit;
+            this.generationThreshold = generationThreshold;
+        }
+    }
+
+    /**
+     * Constructs a SolveTrace writing to a file, replacing any existing trace.
+     *
+     * @param fileName The name of the trace file.
+     * @throws IOException If the file can't be created.
+     */
+    public SolveTrace(String fileName) throws IOException
+    {
+        pw = new PrintWriter(new FileWriter(fileName));
+    }
+
+    /**
+     * Records the thresholds the groups are built with, before any group.
+     *
+     * @param config The configuration of the groups.
+     */
+    public void recordConfig(SolverConfig config)
+    {
+        pw.printf("%s\t%d\t%s%n", Operation.Config, config.getPermutationLimit(), config.getGenerationThreshold());
+    }
+
+    /**
+     * Records the clues and size of a group, before any of its operations.
+     *
+     * @param groupId The id of the group.
+     * @param size The number of cells in the group.
+     * @param clues The clues of the group.
+     */
+    public void recordGroup(int groupId, int size, int[] clues)
+    {
+        StringBuilder sb = new StringBuilder();
+
+        for (int clue : clues)
+        {
+            if (!sb.isEmpty())
+                sb.append(',');
+            sb.append(clue);
+        }
+
+        pw.printf("%s\t%d\t%d\t%s%n", Operation.Group, groupId, size, sb);
+    }
+
+    /**
+     * Records the overlap of a group.
+     *
+     * @param groupId The id of the group.
+     * @param result The cells solved by the overlap.
+     */
+    public void recordOverlap(int groupId, int[] result)
+    {
+        pw.printf("%s\t%d\t%s%n", Operation.Overlap, groupId, Group.lineToString(result));
+    }
+
+    /**
+     * Records an update of a group.
+     *
+     * @param groupId The id of the group.
+     * @param partial The partial line passed to the update.
+     * @param filledChanges The cells set to filled since the last update.
+     * @param blankChanges The cells set to blank since the last update.
+     * @param result The line returned by the update.
+     * @param strategy The deduction strategy that produced the result.
+     */
+    public void recordUpdate(int groupId, int[] partial, long filledChanges, long blankChanges, int[] result,
+                             String strategy)
+    {
+        pw.printf("%s\t%d\t%s\t%x\t%x\t%s\t%s%n", Operation.Update, groupId, Group.lineToString(partial),
+                filledChanges, blankChanges, Group.lineToString(result), strategy);
+    }
+
+    /**
+     * Records a forced generation of a group.
+     *
+     * @param groupId The id of the group.
+     * @param partial The partial line passed to the forced generation.
+     * @param result The line returned by the forced generation.
+     * @param strategy The deduction strategy that produced the result.
+     */
+    public void recordForce(int groupId, int[] partial, int[] result, String strategy)
+    {
+        pw.printf("%s\t%d\t%s\t%s\t%s%n", Operation.Force, groupId, Group.lineToString(partial),
+                Group.lineToString(result), strategy);
+    }
+
+    /**
+     * Flushes and closes the trace file.
+     */
+    @Override
+    public void close()
+    {
+        pw.close();
+    }
+
+    /**
+     * Reads every record of a trace file, in the order they were recorded.
+     *
+     * @param fileName The name of the trace file.
+     * @return The records of the trace.
+     * @throws IOException If the file can't be read.
+     * @throws IllegalArgumentException If a line of the file isn't a trace record.
+     */
+    public static ArrayList<Record> read(String fileName) throws IOException
+    {
+        ArrayList<Record> records = new ArrayList<>();
+
+        try (BufferedReader br = new BufferedReader(new FileReader(fileName)))
+        {
+            String line;
+
+            while ((line = br.readLine()) != null)
+            {
+                if (line.isBlank())
+                    continue;
+
+                String[] fields = line.split("\t");
+                Operation operation = Operation.valueOf(fields[0]);
+                int groupId = operation == Operation.Config ? -1 : Integer.parseInt(fields[1]);
+
+                records.add(switch (operation)
+                {
+                    case Config -> new Record(Integer.parseInt(fields[1]), Double.parseDouble(fields[2]));
+                    case Group -> new Record(Operation.Group, groupId, Integer.parseInt(fields[2]),
+                            parseClues(fields[3]), null, 0L, 0L, null, null);
+                    case Overlap -> new Record(Operation.Overlap, groupId, 0, null, null, 0L, 0L,
+                            parseLine(fields[2]), null);
+                    case Update -> new Record(Operation.Update, groupId, 0, null, parseLine(fields[2]),
+                            Long.parseUnsignedLong(fields[3], 16), Long.parseUnsignedLong(fields[4], 16),
+                            parseLine(fields[5]), fields[6]);
+                    case Force -> new Record(Operation.Force, groupId, 0, null, parseLine(fields[2]), 0L, 0L,
+                            parseLine(fields[3]), fields[4]);
+                });
+            }
+        }
+
+        return records;
+    }
+
+    private static int[] parseClues(String text)
+    {
+        String[] values = text.split(",");
+        int[] clues = new int[values.length];
+
+        for (int i = 0; i < values.length; i++)
+            clues[i] = Integer.parseInt(values[i]);
+
+        return clues;
+    }
+
+    private static int[] parseLine(String text)
+    {
+        int[] line = new int[text.length()];
+
+        for (int i = 0; i < line.length; i++)
+            line[i] = switch (text.charAt(i))
+            {
+                case '#' -> 1;
+                case '.' -> -1;
+                case '?' -> 0;
+                default -> throw new IllegalArgumentException("Not a trace line: " + text);
+            };
+
+        return line;
+    }
+}
@@ -0,0 +1,397 @@
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Targeted checks of solver behaviour that the LineFuzzer and the RegressionSuite
+ * don't reach, because the default pipeline and the shipped puzzles never exercise
+ * it. Each check sets up the case it needs, prints PASS or FAIL with the reason, and
+ * the run exits with a non-zero code if any check failed.
+ */
+public class SolverChecks
+{
+    /**
+     * One check, returning null if it passed or the reason it failed.
+     */
+    private interface Check
+    {
+        String run() throws Exception;
+    }
+
+    private static final com.sun.management.ThreadMXBean threads =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final LinkedHashMap<String, Check> checks = new LinkedHashMap<>();
+
+    /**
+     * Runs the checks.
+     *
+     * @param args The names of the checks to run, every check if none.
+     */
+    public static void main(String[] args)
+    {
+        if (!new SolverChecks().run(List.of(args)))
+            System.exit(1);
+    }
+
+    /**
+     * Constructs SolverChecks with every check.
+     */
+    public SolverChecks()
+    {
+        checks.put("StrategyReordering", SolverChecks::strategyReordering);
+        checks.put("StrategySkipping", SolverChecks::strategySkipping);
+        checks.put("BatchAllocation", SolverChecks::batchAllocation);
+        checks.put("LineAliasing", SolverChecks::lineAliasing);
+        checks.put("UpdateAllocation", SolverChecks::updateAllocation);
+        checks.put("ProfileReplay", SolverChecks::profileReplay);
+    }
+
+    /**
+     * Runs the named checks.
+     *
+     * @param names The names of the checks to run, every check if empty.
+     * @return True if every check passed.
+     * @throws IllegalArgumentException If a name isn't a check.
+     */
+    public boolean run(List<String> names)
+    {
+        for (String name : names)
+            if (!checks.containsKey(name))
+                throw new IllegalArgumentException("Unknown check: " + name);
+
+        int failed = 0;
+
+        for (String name : checks.keySet())
+        {
+            if (!names.isEmpty() && !names.contains(name))
+                continue;
+
+            String failure;
+            try
+            {
+                failure = checks.get(name).run();
+            } catch (Exception e)
+            {
+                failure = e.toString();
+            }
+
+            if (failure == null)
+                System.out.printf("PASS %s%n", name);
+            else
+            {
+                System.out.printf("FAIL %s: %s%n", name, failure);
+                failed++;
+            }
+        }
+
+        System.out.println(failed == 0 ? "PASSED" : String.format("FAILED %d check(s)", failed));
+        return failed == 0;
+    }
+
+    /**
+     * Writes the sample puzzle of the README to a temporary file.
+     *
+     * @return The puzzle file, deleted when the JVM exits.
+     */
+    private static Path samplePuzzle() throws Exception
+    {
+        Path file = Files.createTempFile("sample", ".txt");
+        file.toFile().deleteOnExit();
+        Files.write(file, List.of("5,5", "3", "3", "1", "3", "1,1,1", "2,1", "2", "2,2", "1", "3"));
+
+        return file;
+    }
+
+    /**
+     * A strategy that isn't exhaustive, wrapping another deduction and logging each
+     * call. A slow strategy sleeps before deducing, so its calls average more than the
+     * time below which a strategy is never skipped.
+     */
+    private static class LoggedStrategy implements DeductionStrategy
+    {
+        private final String name;
+        private final boolean gains;
+        private final long sleepMillis;
+        private final List<String> log;
+
+        LoggedStrategy(String name, boolean gains, long sleepMillis, List<String> log)
+        {
+            this.name = name;
+            this.gains = gains;
+            this.sleepMillis = sleepMillis;
+            this.log = log;
+        }
+
+        @Override
+        public String getName()
+        {
+            return name;
+        }
+
+        @Override
+        public boolean isExhaustive()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isApplicable(Group group, int[] partial)
+        {
+            return true;
+        }
+
+        @Override
+        public int[] deduce(Group group, int[] partial)
+        {
+            log.add(name);
+
+            if (sleepMillis > 0)
+            {
+                try
+                {
+                    Thread.sleep(sleepMillis);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            return gains ? group.deduceLinePatterns(partial) : partial.clone();
+        }
+    }
+
+    private static Group pipelineGroup(int[] clues, int size, List<DeductionStrategy> pipeline)
+    {
+        SolverConfig config = new SolverConfig("checks", SolverConfig.Strategy.LineSolving,
+                SolverConfig.PERMUTATION_LIMIT, SolverConfig.GENERATION_THRESHOLD, pipeline);
+        return new Group(clues, size, 0, config, CancellationToken.NONE);
+    }
+
+    /**
+     * A strategy that gains cells moves ahead of one that missed: a pipeline of a
+     * slow strategy that never gains and the line rules runs both on the first
+     * update, and the line rules first on the next.
+     */
+    private static String strategyReordering()
+    {
+        ArrayList<String> log = new ArrayList<>();
+        Group group = pipelineGroup(new int[] {4, 3}, 10, List.of(new LoggedStrategy("Miss", false, 1, log),
+                new LoggedStrategy("Rules", true, 0, log)));
+
+        int[] line = new int[10];
+        line[1] = 1;
+        line = group.updateGroup(line, 1L << 1, 0L).clone();
+
+        if (!log.equals(List.of("Miss", "Rules")))
+            return "first update ran " + log;
+
+        log.clear();
+        line[9] = 1;
+        group.updateGroup(line, 1L << 9, 0L);
+
+        if (log.isEmpty() || !log.getFirst().equals("Rules"))
+            return "second update ran " + log + ", the strategy that gained cells was not moved first";
+
+        return null;
+    }
+
+    /**
+     * A slow strategy that keeps missing is skipped, but tried again every few skips,
+     * and a cheap strategy that keeps missing is never skipped.
+     */
+    private static String strategySkipping()
+    {
+        ArrayList<String> log = new ArrayList<>();
+        Group group = pipelineGroup(new int[] {1, 1}, 10, List.of(new LoggedStrategy("Slow", false, 11, log),
+                new LoggedStrategy("Cheap", false, 0, log)));
+        int[] line = new int[10];
+        int updates = 16;
+
+        for (int i = 0; i < updates; i++)
+            group.updateGroup(line, 0L, 0L);
+
+        long slow = log.stream().filter("Slow"::equals).count();
+        long cheap = log.stream().filter("Cheap"::equals).count();
+
+        if (cheap != updates)
+            return String.format("the cheap strategy ran %d of %d updates", cheap, updates);
+        if (slow >= updates)
+            return String.format("the slow strategy ran all %d updates", updates);
+        if (slow <= 4)
+            return String.format("the slow strategy ran %d of %d updates, it was never retried", slow, updates);
+
+        return null;
+    }
+
+    /**
+     * A batch result counts the bytes its solve allocated. The worker only calls
+     * Driver.solve(), so it has to time the phase the allocations are counted over.
+     */
+    private static String batchAllocation() throws Exception
+    {
+        String[] fields = BatchWorker.solve(samplePuzzle().toString()).split("\t", -1);
+
+        if (!fields[1].equals("solved"))
+            return "the sample puzzle was " + fields[1];
+
+        for (String pair : fields[3].split(";"))
+            if (pair.startsWith("allocatedBytes="))
+                return Long.parseLong(pair.substring(pair.indexOf('=') + 1)) > 0 ? null
+                        : "the result counted 0 allocated bytes";
+
+        return "the result has no allocatedBytes count";
+    }
+
+    /**
+     * A line returned by an update is the group's own buffer, passing it straight back
+     * in as the partial line is refused instead of corrupting the update.
+     */
+    private static String lineAliasing()
+    {
+        Group group = new Group(new int[] {4, 3}, 10, 0);
+        int[] line = new int[10];
+        line[1] = 1;
+
+        int[] result = group.updateGroup(line, 1L << 1, 0L);
+        if (result == line)
+            return "the line rules gained no cells on the check line";
+
+        try
+        {
+            group.updateGroup(result, 0L, 0L);
+            return "an update accepted the group's own line buffer as its partial line";
+        } catch (IllegalArgumentException e)
+        {
+            // Expected, and a copy of the result is still accepted.
+        }
+
+        group.updateGroup(result.clone(), 0L, 0L);
+        return null;
+    }
+
+    /**
+     * Updates in the steady state of a solve allocate nothing: line rule updates, and
+     * filtering updates once the permutations are generated. The same random reveals
+     * of a line are replayed until the code is compiled, then measured on the thread
+     * that runs them. Generating the permutations allocates them and isn't measured.
+     */
+    private static String updateAllocation()
+    {
+        if (!threads.isThreadAllocatedMemorySupported())
+            return null;
+
+        SolverConfig lineRules = new SolverConfig("checks-rules", SolverConfig.Strategy.LineSolving,
+                SolverConfig.PERMUTATION_LIMIT, SolverConfig.GENERATION_THRESHOLD, List.of(Deductions.LineRules));
+        SolverConfig generation = new SolverConfig("checks-generation", SolverConfig.Strategy.LineSolving,
+                Integer.MAX_VALUE, 0.0, List.of(Deductions.Generation, Deductions.Permutations));
+        long allocated = 0L;
+
+        for (int run = 0; run < 5_000; run++)
+        {
+            allocated = revealAllocation(lineRules) + revealAllocation(generation);
+            if (allocated == 0)
+                return null;
+        }
+
+        return String.format("the updates of a line still allocated %,d bytes once compiled", allocated);
+    }
+
+    /**
+     * Reveals the cells of a fixed line one at a time in a random order, updating a
+     * new group after each reveal like the solving loop does.
+     *
+     * @param config The configuration of the group.
+     * @return The bytes allocated by the updates, not counting the one that generated.
+     */
+    private static long revealAllocation(SolverConfig config)
+    {
+        int[] solution = {1, 1, 1, -1, -1, 1, 1, 1, 1, -1, 1, 1, -1, -1, -1, 1, -1, 1, 1, 1};
+        int[] order = new int[solution.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+
+        Random random = new Random(7);
+        for (int i = order.length - 1; i > 0; i--)
+        {
+            int j = random.nextInt(i + 1);
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+
+        Group group = new Group(new int[] {3, 4, 2, 1, 3}, solution.length, 0, config, CancellationToken.NONE);
+        int[] line = new int[solution.length];
+        long threadId = Thread.currentThread().threadId();
+        long allocated = 0L;
+
+        for (int cell : order)
+        {
+            if (line[cell] != 0)
+                continue;
+
+            line[cell] = solution[cell];
+            long filled = solution[cell] == 1 ? 1L << cell : 0L;
+            long blank = solution[cell] == -1 ? 1L << cell : 0L;
+            boolean generated = group.getPermutationsGenerated();
+
+            long before = threads.getThreadAllocatedBytes(threadId);
+            int[] result = group.updateGroup(line, filled, blank);
+            System.arraycopy(result, 0, line, 0, line.length);
+            long after = threads.getThreadAllocatedBytes(threadId);
+
+            if (generated)
+                allocated += after - before;
+        }
+
+        return allocated;
+    }
+
+    /**
+     * A trace recorded with a tuned profile replays with the profile's thresholds. A
+     * lower permutation limit and a later generation threshold than the defaults make
+     * the groups generate at other updates, so replaying with the defaults mismatches.
+     */
+    private static String profileReplay() throws Exception
+    {
+        Path traceFile = Files.createTempFile("profile", ".trace");
+        traceFile.toFile().deleteOnExit();
+
+        SolverProfile profile = new SolverProfile();
+        profile.put(SolverProfile.ALL_CLASSES, new SolverProfile.Entry(50_000, 0.4, 0L, 0L,
+                Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory()));
+
+        Driver driver = new Driver(SolverConfig.DEFAULT, CancellationToken.NONE);
+        driver.setProfile(profile);
+
+        try (SolveTrace trace = new SolveTrace(traceFile.toString()))
+        {
+            driver.setTrace(trace);
+            driver.solve("25x25 Nonogram.txt");
+        }
+
+        // The replay prints its timings, only the mismatch is kept for the failure.
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        boolean replayed;
+
+        System.setOut(new PrintStream(output));
+        try
+        {
+            replayed = new TraceReplay().run(SolveTrace.read(traceFile.toString()));
+        } finally
+        {
+            System.setOut(out);
+        }
+
+        return replayed ? null : output.toString().lines().filter(line -> line.startsWith("Mismatch"))
+                .map(line -> line.substring(0, line.length() - 1)).findFirst()
+                .orElse("the replay did not reproduce the trace");
+    }
+}
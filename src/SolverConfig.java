@@ -0,0 +1,112 @@
+import java.util.List;
+
+/**
+ * The settings of one solver configuration. Holds the strategy used to solve the
+ * board and the thresholds that decide when groups generate their permutations.
+ */
+public class SolverConfig
+{
+    // Constant that determines if a group is a high permutation group.
+    public static final int PERMUTATION_LIMIT = 250000;
+    // Constant that sets the solution fill threshold before generation.
+    public static final double GENERATION_THRESHOLD = 0.2;
+
+    public static final SolverConfig DEFAULT = new SolverConfig("default", Strategy.LineSolving,
+            PERMUTATION_LIMIT, GENERATION_THRESHOLD);
+
+    /**
+     * LineSolving runs the Driver solving loop, Search propagates with the same
+     * line solving and guesses cells whenever it stalls.
+     */
+    enum Strategy {LineSolving, Search}
+
+    private final String name;
+    private final Strategy strategy;
+    private final int permutationLimit;
+    private final double generationThreshold;
+    private final List<DeductionStrategy> strategies;
+    private final boolean offHeap;
+
+    /**
+     * Constructs a SolverConfig.
+     *
+     * @param name The name of the configuration, used when reporting results.
+     * @param strategy The strategy used to solve the board.
+     * @param permutationLimit The maximum permutations before a group is a high permutation group.
+     * @param generationThreshold The fraction of solved cells a high permutation group needs
+     *                            before it generates.
+     */
+    public SolverConfig(String name, Strategy strategy, int permutationLimit, double generationThreshold)
+    {
+        this(name, strategy, permutationLimit, generationThreshold, DeductionStrategy.DEFAULT_PIPELINE);
+    }
+
+    /**
+     * Constructs a SolverConfig with its own pipeline of line deduction strategies.
+     *
+     * @param name The name of the configuration, used when reporting results.
+     * @param strategy The strategy used to solve the board.
+     * @param permutationLimit The maximum permutations before a group is a high permutation group.
+     * @param generationThreshold The fraction of solved cells a high permutation group needs
+     *                            before it generates.
+     * @param strategies The deduction strategies each group runs on an update.
+     */
+    public SolverConfig(String name, Strategy strategy, int permutationLimit, double generationThreshold,
+                        List<DeductionStrategy> strategies)
+    {
+        this(name, strategy, permutationLimit, generationThreshold, strategies, false);
+    }
+
+    /**
+     * Constructs a SolverConfig that can keep the permutations of high permutation
+     * groups off the heap.
+     *
+     * @param name The name of the configuration, used when reporting results.
+     * @param strategy The strategy used to solve the board.
+     * @param permutationLimit The maximum permutations before a group is a high permutation group.
+     * @param generationThreshold The fraction of solved cells a high permutation group needs
+     *                            before it generates.
+     * @param strategies The deduction strategies each group runs on an update.
+     * @param offHeap If high permutation groups store their permutations off the heap.
+     */
+    public SolverConfig(String name, Strategy strategy, int permutationLimit, double generationThreshold,
+                        List<DeductionStrategy> strategies, boolean offHeap)
+    {
+        this.name = name;
+        this.strategy = strategy;
+        this.permutationLimit = permutationLimit;
+        this.generationThreshold = generationThreshold;
+        this.strategies = strategies;
+        this.offHeap = offHeap;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public Strategy getStrategy()
+    {
+        return strategy;
+    }
+
+    public int getPermutationLimit()
+    {
+        return permutationLimit;
+    }
+
+    public double getGenerationThreshold()
+    {
+        return generationThreshold;
+    }
+
+    public List<DeductionStrategy> getStrategies()
+    {
+        return strategies;
+    }
+
+    public boolean isOffHeap()
+    {
+        return offHeap;
+    }
+}
@@ -0,0 +1,180 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+
+/**
+ * A tuned profile of the generation thresholds, the permutation limit and the
+ * generation threshold found fastest for each puzzle class on one machine. Written
+ * by the ThresholdCalibrator and loaded by the solver at startup, so each machine
+ * runs with the thresholds fitted to its cores and heap.
+ * <p>
+ * The profile is a CSV file with one row per puzzle class. Each row also records
+ * the cores and maximum heap of the machine it was tuned on, a profile loaded on a
+ * different machine is still used but a warning is printed.
+ */
+public class SolverProfile
+{
+    // Constant for the profile file loaded at startup when no other file is given.
+    public static final String DEFAULT_FILE = "Solver Profile.csv";
+    // Constant for the class used by puzzles whose own class wasn't calibrated.
+    public static final String ALL_CLASSES = "all";
+
+    // The largest side of each puzzle class, larger puzzles are in the last class.
+    private static final int[] CLASS_SIDES = {15, 30, 50};
+    private static final String HEADER = "class,permutationLimit,generationThreshold,solveNanos,peakHeapBytes,"
+            + "processors,maxHeapBytes";
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * The tuned settings of one puzzle class and the measurements they were chosen by.
+     */
+    public record Entry(int permutationLimit, double generationThreshold, long solveNanos, long peakHeapBytes,
+                        int processors, long maxHeapBytes)
+    {
+    }
+
+    /**
+     * Finds the puzzle class of a board from its largest side.
+     *
+     * @param width The width of the board.
+     * @param length The length of the board.
+     * @return The name of the class, for example "side<=30".
+     */
+    public static String classOf(int width, int length)
+    {
+        int side = Math.max(width, length);
+
+        for (int classSide : CLASS_SIDES)
+            if (side <= classSide)
+                return "side<=" + classSide;
+
+        return "side>" + CLASS_SIDES[CLASS_SIDES.length - 1];
+    }
+
+    /**
+     * Loads a profile file.
+     *
+     * @param fileName The profile file.
+     * @return The profile, or null if the file doesn't exist.
+     * @throws IllegalArgumentException If the file isn't a profile.
+     */
+    public static SolverProfile load(String fileName)
+    {
+        File file = new File(fileName);
+
+        if (!file.exists())
+            return null;
+
+        SolverProfile profile = new SolverProfile();
+
+        try (BufferedReader br = new BufferedReader(new FileReader(file)))
+        {
+            String line = br.readLine();
+            if (!HEADER.equals(line))
+                throw new IllegalArgumentException("Not a solver profile: " + fileName);
+
+            while ((line = br.readLine()) != null)
+            {
+                if (line.isBlank())
+                    continue;
+
+                String[] values = line.split(",");
+                profile.put(values[0], new Entry(Integer.parseInt(values[1]), Double.parseDouble(values[2]),
+                        Long.parseLong(values[3]), Long.parseLong(values[4]), Integer.parseInt(values[5]),
+                        Long.parseLong(values[6])));
+            }
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+
+        Runtime runtime = Runtime.getRuntime();
+        for (Entry entry : profile.entries.values())
+        {
+            if (entry.processors() != runtime.availableProcessors() || entry.maxHeapBytes() != runtime.maxMemory())
+            {
+                System.err.printf("%s was tuned on %d cores and a %s heap, this machine has %d cores and a %s heap%n",
+                        fileName, entry.processors(), MemoryStats.formatBytes(entry.maxHeapBytes()),
+                        runtime.availableProcessors(), MemoryStats.formatBytes(runtime.maxMemory()));
+                break;
+            }
+        }
+
+        return profile;
+    }
+
+    /**
+     * Sets the tuned settings of a puzzle class.
+     *
+     * @param puzzleClass The name of the class, see classOf(), or ALL_CLASSES.
+     * @param entry The tuned settings.
+     */
+    public void put(String puzzleClass, Entry entry)
+    {
+        entries.put(puzzleClass, entry);
+    }
+
+    /**
+     * Getter for the tuned settings of a puzzle class.
+     *
+     * @param puzzleClass The name of the class.
+     * @return The tuned settings, or null if the class wasn't calibrated.
+     */
+    public Entry get(String puzzleClass)
+    {
+        return entries.get(puzzleClass);
+    }
+
+    /**
+     * Fits a solver configuration to a board. The thresholds of the board's class
+     * are used, or those of ALL_CLASSES if its class wasn't calibrated. Everything
+     * else is kept from the base configuration.
+     *
+     * @param width The width of the board.
+     * @param length The length of the board.
+     * @param base The configuration to tune.
+     * @return The tuned configuration, or the base configuration if the profile has
+     *         no settings for the board.
+     */
+    public SolverConfig configFor(int width, int length, SolverConfig base)
+    {
+        Entry entry = entries.get(classOf(width, length));
+
+        if (entry == null)
+            entry = entries.get(ALL_CLASSES);
+        if (entry == null)
+            return base;
+
+        return new SolverConfig(base.getName() + "-tuned", base.getStrategy(), entry.permutationLimit(),
+                entry.generationThreshold(), base.getStrategies(), base.isOffHeap());
+    }
+
+    /**
+     * Writes the profile to a file.
+     *
+     * @param fileName The profile file.
+     */
+    public void write(String fileName)
+    {
+        try (PrintWriter pw = new PrintWriter(new FileWriter(fileName)))
+        {
+            pw.println(HEADER);
+
+            for (String puzzleClass : entries.keySet())
+            {
+                Entry entry = entries.get(puzzleClass);
+                pw.printf("%s,%d,%s,%d,%d,%d,%d%n", puzzleClass, entry.permutationLimit(),
+                        entry.generationThreshold(), entry.solveNanos(), entry.peakHeapBytes(), entry.processors(),
+                        entry.maxHeapBytes());
+            }
+        } catch (IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+}
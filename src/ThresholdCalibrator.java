@@ -0,0 +1,269 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Calibrates the permutation limit and the generation threshold for the machine it
+ * runs on. Every puzzle of a corpus is solved with every pair of settings, the wall
+ * time and the peak heap of each solve are measured, and the fastest pair of each
+ * puzzle class that stays under the peak heap cap is written to a SolverProfile.
+ * The solver loads the profile at startup.
+ * <p>
+ * Puzzles are grouped into classes by their largest side, see SolverProfile.classOf().
+ * A pair is only chosen for a class if it solved every puzzle of the class within
+ * the time limit. The pair fastest over the whole corpus is also stored for the
+ * classes the corpus has no puzzles of.
+ */
+public class ThresholdCalibrator
+{
+    // Puzzles solved when no puzzle files are given on the command line.
+    private static final List<String> DEFAULT_CORPUS = List.of("25x25 Nonogram.txt", "30x30 nonogram.txt",
+            "50x50 nonogram 2.txt", "50x50 nonogram 3.txt", "50x50 nonogram 4.txt", "50x50 nonogram 5.txt");
+
+    private int[] limits = {100_000, SolverConfig.PERMUTATION_LIMIT, 1_000_000};
+    private double[] thresholds = {0.1, SolverConfig.GENERATION_THRESHOLD, 0.4};
+    private int runs = 2;
+    private long timeLimitSeconds = 60;
+    private long maxPeakBytes = 0L;
+    private String profileFile = SolverProfile.DEFAULT_FILE;
+
+    /**
+     * The measurements of one pair of settings over the puzzles of one class.
+     */
+    private static class Measurement
+    {
+        long nanos = 0L;
+        long peakHeapBytes = 0L;
+        boolean failed = false;
+    }
+
+    /**
+     * Runs the calibration.
+     *
+     * @param args "-limits n,n,..." and "-thresholds f,f,..." for the settings tried,
+     *             "-runs n" per puzzle, "-timeLimit seconds" per solve, "-maxPeak MiB"
+     *             for the peak heap cap, "-out file" for the profile and then the
+     *             puzzle files, the default corpus if none.
+     */
+    public static void main(String[] args)
+    {
+        ThresholdCalibrator calibrator = new ThresholdCalibrator();
+        ArrayList<String> corpus = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-limits" -> calibrator.limits = Arrays.stream(args[++i].split(","))
+                        .mapToInt(Integer::parseInt).toArray();
+                case "-thresholds" -> calibrator.thresholds = Arrays.stream(args[++i].split(","))
+                        .mapToDouble(Double::parseDouble).toArray();
+                case "-runs" -> calibrator.runs = Integer.parseInt(args[++i]);
+                case "-timeLimit" -> calibrator.timeLimitSeconds = Long.parseLong(args[++i]);
+                case "-maxPeak" -> calibrator.maxPeakBytes = Long.parseLong(args[++i]) << 20;
+                case "-out" -> calibrator.profileFile = args[++i];
+                default -> corpus.add(args[i]);
+            }
+        }
+
+        if (corpus.isEmpty())
+            corpus.addAll(DEFAULT_CORPUS);
+
+        if (!calibrator.run(corpus))
+            System.exit(1);
+    }
+
+    /**
+     * Solves the corpus with every pair of settings and writes the profile.
+     *
+     * @param corpus The puzzle files to solve.
+     * @return True if a pair of settings was found for every class of the corpus.
+     */
+    public boolean run(List<String> corpus)
+    {
+        // The class of each puzzle, read once from the board size.
+        LinkedHashMap<String, String> classes = new LinkedHashMap<>();
+        for (String fileName : corpus)
+        {
+            int[] size = Util.readFile(fileName).getFirst();
+            classes.put(fileName, SolverProfile.classOf(size[0], size[1]));
+        }
+
+        // Measurements by class, then by pair of settings in the order they are tried.
+        LinkedHashMap<String, Measurement[]> results = new LinkedHashMap<>();
+        int pairs = limits.length * thresholds.length;
+        for (String puzzleClass : classes.values())
+            results.computeIfAbsent(puzzleClass, c -> newMeasurements(pairs));
+        results.put(SolverProfile.ALL_CLASSES, newMeasurements(pairs));
+
+        for (int pair = 0; pair < pairs; pair++)
+        {
+            SolverConfig config = configOf(pair);
+            System.out.printf("%s:%n", config.getName());
+
+            for (String fileName : corpus)
+            {
+                long[] measured = measure(fileName, config);
+                String puzzle = new File(fileName).getName();
+
+                if (measured == null)
+                    System.out.printf("  %s: failed%n", puzzle);
+                else
+                    System.out.printf("  %s: %s, peak heap %s%n", puzzle, Timing.formatTime(measured[0]),
+                            MemoryStats.formatBytes(measured[1]));
+
+                add(results.get(classes.get(fileName))[pair], measured);
+                add(results.get(SolverProfile.ALL_CLASSES)[pair], measured);
+            }
+        }
+
+        SolverProfile profile = new SolverProfile();
+        boolean complete = true;
+
+        System.out.println();
+        for (String puzzleClass : results.keySet())
+        {
+            int best = choose(results.get(puzzleClass));
+
+            if (best < 0)
+            {
+                System.out.printf("%s: no settings solved every puzzle%n", puzzleClass);
+                complete = false;
+                continue;
+            }
+
+            Measurement measurement = results.get(puzzleClass)[best];
+            SolverConfig config = configOf(best);
+            profile.put(puzzleClass, new SolverProfile.Entry(config.getPermutationLimit(),
+                    config.getGenerationThreshold(), measurement.nanos, measurement.peakHeapBytes,
+                    Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().maxMemory()));
+            System.out.printf("%s: %s, %s, peak heap %s%n", puzzleClass, config.getName(),
+                    Timing.formatTime(measurement.nanos), MemoryStats.formatBytes(measurement.peakHeapBytes));
+        }
+
+        profile.write(profileFile);
+        System.out.println("Profile written to " + profileFile);
+
+        return complete;
+    }
+
+    /**
+     * Makes the configuration of a pair of settings, the limits vary slowest.
+     *
+     * @param pair The index of the pair.
+     * @return The configuration, named after its settings.
+     */
+    private SolverConfig configOf(int pair)
+    {
+        int limit = limits[pair / thresholds.length];
+        double threshold = thresholds[pair % thresholds.length];
+
+        return new SolverConfig(String.format("limit %,d threshold %s", limit, threshold),
+                SolverConfig.Strategy.LineSolving, limit, threshold);
+    }
+
+    /**
+     * Solves a puzzle with a configuration, keeping the fastest wall time of the runs
+     * and the highest peak heap. The heap is collected before each run so the peak
+     * is mostly the solve's own.
+     *
+     * @param fileName The puzzle file.
+     * @param config The configuration to solve with.
+     * @return The wall time in nanoseconds and the peak heap in bytes, or null if a
+     *         run failed, ran out of time or solved the board wrongly.
+     */
+    private long[] measure(String fileName, SolverConfig config)
+    {
+        long bestTime = Long.MAX_VALUE;
+        long peak = 0L;
+
+        for (int i = 0; i < runs; i++)
+        {
+            System.gc();
+            Timing.reset();
+            GenerationStatWriter.reset();
+
+            Driver driver = new Driver(config, CancellationToken.NONE);
+            driver.setBudget(timeLimitSeconds * 1_000_000_000L, 0);
+
+            try
+            {
+                long start = System.nanoTime();
+                GameBoard gBoard = driver.solve(fileName);
+                long time = System.nanoTime() - start;
+
+                if (driver.isBudgetExhausted() || !Util.boardMatchesClues(gBoard, Util.readFile(fileName)))
+                    return null;
+
+                bestTime = Math.min(bestTime, time);
+                peak = Math.max(peak, MemoryStats.getPeakHeapBytes());
+            } catch (ContradictionException | IllegalStateException | OutOfMemoryError e)
+            {
+                return null;
+            }
+        }
+
+        return new long[] {bestTime, peak};
+    }
+
+    /**
+     * Adds the measurements of one puzzle to those of a pair of settings.
+     *
+     * @param measurement The measurements of the pair.
+     * @param measured The wall time and peak heap of the puzzle, null if it failed.
+     */
+    private static void add(Measurement measurement, long[] measured)
+    {
+        if (measured == null)
+        {
+            measurement.failed = true;
+            return;
+        }
+
+        measurement.nanos += measured[0];
+        measurement.peakHeapBytes = Math.max(measurement.peakHeapBytes, measured[1]);
+    }
+
+    /**
+     * Chooses the pair of settings of a class: the fastest pair under the peak heap
+     * cap, or the pair with the lowest peak heap if none is under the cap. Pairs that
+     * failed a puzzle are never chosen.
+     *
+     * @param measurements The measurements of each pair over the class.
+     * @return The index of the chosen pair, -1 if every pair failed.
+     */
+    private int choose(Measurement[] measurements)
+    {
+        int fastest = -1;
+        int smallest = -1;
+
+        for (int pair = 0; pair < measurements.length; pair++)
+        {
+            Measurement measurement = measurements[pair];
+
+            if (measurement.failed)
+                continue;
+
+            if (smallest < 0 || measurement.peakHeapBytes < measurements[smallest].peakHeapBytes)
+                smallest = pair;
+
+            if ((maxPeakBytes == 0 || measurement.peakHeapBytes <= maxPeakBytes)
+                    && (fastest < 0 || measurement.nanos < measurements[fastest].nanos))
+                fastest = pair;
+        }
+
+        return fastest >= 0 ? fastest : smallest;
+    }
+
+    private static Measurement[] newMeasurements(int pairs)
+    {
+        Measurement[] measurements = new Measurement[pairs];
+
+        for (int i = 0; i < pairs; i++)
+            measurements[i] = new Measurement();
+
+        return measurements;
+    }
+}
@@ -1,6 +1,7 @@
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.LinkedHashMap;
 
 public class Timing
 {
@@ -8,8 +9,6 @@ public class Timing
     private static long fileEnd = 0L;
     private static long initStart = 0L;
     private static long initEnd = 0L;
-    private static long groupInitStart = 0L;
-    private static long groupInitEnd = 0L;
     private static long overlapStart = 0L;
     private static long overlapEnd = 0L;
     private static long solvingStart = 0L;
@@ -26,12 +25,17 @@ public class Timing
     private static long commonEnd = 0L;
     private static int totalPermutations = 0;
     private static int totalIterations = 0;
-    private static int totalAttemptedPermutations = 0;
-    private static int totalEarlyPruningInstances = 0;
+    private static long totalAttemptedPermutations = 0;
+    private static long totalEarlyPruningInstances = 0;
     private static int totalMaxPermutations = 0;
     private static int totalAllocatedPermutations = 0;
+    private static int knownCells = 0;
+    private static int totalCells = 0;
+    private static boolean budgetExhausted = false;
+    // Calls, nanoseconds and cells gained of each deduction strategy.
+    private static final LinkedHashMap<String, long[]> strategyStats = new LinkedHashMap<>();
 
-    public enum Timings {FileReading, Initialization, CountGeneration, Overlap, SolvingLoop,
+    public enum Timings {FileReading, Initialization, Overlap, SolvingLoop,
         Total, Generation, Filtering, EdgePattern, ConsistentPattern}
 
     /**
@@ -42,6 +46,8 @@ public class Timing
      */
     public static void timingStart(Timings timing)
     {
+        MemoryStats.phaseStart(timing);
+
         switch (timing)
         {
             case Timings.FileReading:
@@ -50,9 +56,6 @@ public class Timing
             case Timings.Initialization:
                 initStart += System.nanoTime();
                 break;
-            case Timings.CountGeneration:
-                groupInitStart += System.nanoTime();
-                break;
             case Timings.Overlap:
                 overlapStart = System.nanoTime();
                 break;
@@ -96,9 +99,6 @@ public class Timing
             case Timings.Initialization:
                 initEnd += System.nanoTime();
                 break;
-            case Timings.CountGeneration:
-                groupInitEnd += System.nanoTime();
-                break;
             case Timings.Overlap:
                 overlapEnd = System.nanoTime();
                 break;
@@ -124,6 +124,7 @@ public class Timing
                 break;
         }
 
+        MemoryStats.phaseEnd(timing);
     }
 
     /**
@@ -155,14 +156,95 @@ public class Timing
         totalIterations++;
     }
 
-    public static void addAttemptedPermutationCount()
+    public static void addAttemptedPermutationCount(long attemptedPermutations)
+    {
+        totalAttemptedPermutations += attemptedPermutations;
+    }
+
+    public static void addEarlyPrunedPermutationCount(long earlyPrunedPermutations)
+    {
+        totalEarlyPruningInstances += earlyPrunedPermutations;
+    }
+
+    /**
+     * A method for adding one run of a deduction strategy to its statistics.
+     *
+     * @param strategy The name of the strategy.
+     * @param nanos The time the strategy took.
+     * @param cellsGained The number of cells the strategy deduced.
+     */
+    public static void addStrategyStats(String strategy, long nanos, int cellsGained)
     {
-        totalAttemptedPermutations++;
+        synchronized (strategyStats)
+        {
+            long[] stats = strategyStats.computeIfAbsent(strategy, name -> new long[3]);
+            stats[0]++;
+            stats[1] += nanos;
+            stats[2] += cellsGained;
+        }
     }
 
-    public static void addEarlyPrunedPermutationCount()
+    /**
+     * Records how much of the board a solve left known, less than all of it when
+     * the solve ran out of its budget.
+     *
+     * @param gBoard The board the solve returned.
+     * @param exhausted True if the solve stopped because its budget ran out.
+     */
+    public static void setBoardProgress(GameBoard gBoard, boolean exhausted)
     {
-        totalEarlyPruningInstances++;
+        knownCells = gBoard.getKnownCellCount();
+        totalCells = gBoard.getWidth() * gBoard.getLength();
+        budgetExhausted = exhausted;
+    }
+
+    /**
+     * A method for resetting all the timing points and counts, used when
+     * more than one board is solved in a single run.
+     */
+    public static void reset()
+    {
+        fileStart = fileEnd = 0L;
+        initStart = initEnd = 0L;
+        overlapStart = overlapEnd = 0L;
+        solvingStart = solvingEnd = 0L;
+        totalStart = totalEnd = 0L;
+        generationStart = generationEnd = 0L;
+        filteringStart = filteringEnd = 0L;
+        edgeStart = edgeEnd = 0L;
+        commonStart = commonEnd = 0L;
+        totalPermutations = 0;
+        totalIterations = 0;
+        totalAttemptedPermutations = 0;
+        totalEarlyPruningInstances = 0;
+        totalMaxPermutations = 0;
+        totalAllocatedPermutations = 0;
+        knownCells = totalCells = 0;
+        budgetExhausted = false;
+        synchronized (strategyStats)
+        {
+            strategyStats.clear();
+        }
+        MemoryStats.reset();
+    }
+
+    /**
+     * A method for getting the solving counts in a machine-readable form,
+     * keyed by a fixed metric name.
+     *
+     * @return The solving counts in a fixed order.
+     */
+    public static LinkedHashMap<String, Long> getCounts()
+    {
+        LinkedHashMap<String, Long> counts = new LinkedHashMap<>();
+
+        counts.put("permutationsGenerated", (long) totalPermutations);
+        counts.put("permutationsAllocated", (long) totalAllocatedPermutations);
+        counts.put("permutationsAttempted", totalAttemptedPermutations);
+        counts.put("earlyPruned", totalEarlyPruningInstances);
+        counts.put("iterations", (long) totalIterations);
+
+        return counts;
     }
 
     /**
@@ -175,7 +257,6 @@ public class Timing
             pw.printf("Total Time: %s%n", formatTime(totalEnd - totalStart));
             pw.printf("%nFile Reading: %s%n", formatTime(fileEnd - fileStart));
             pw.printf("Initialization: %s%n", formatTime(initEnd - initStart));
-            pw.printf("Total Counting Generation: %s%n", formatTime(groupInitEnd - groupInitStart));
             pw.printf("Overlap: %s%n", formatTime(overlapEnd - overlapStart));
             pw.printf("Solving Loop: %s%n", formatTime(solvingEnd - solvingStart));
             pw.printf("%nTotal Generation: %s%n", formatTime(generationEnd - generationStart));
@@ -188,6 +269,26 @@ public class Timing
             pw.printf("Total Early Pruning Instances: %,d%n", totalEarlyPruningInstances);
             pw.printf("Total Maximum Permutations: %,d%n", totalMaxPermutations);
             pw.printf("%nTotal Iterations: %,d%n", totalIterations);
+            if (PermutationCache.isOpen())
+                pw.printf("Permutation Cache: Hits: %,d Misses: %,d%n", PermutationCache.getHits(),
+                        PermutationCache.getMisses());
+            pw.printf("Known Cells: %,d of %,d (%.2f%%)%s%n", knownCells, totalCells,
+                    knownCells * 100.0 / Math.max(totalCells, 1), budgetExhausted ? ", budget exhausted" : "");
+
+            synchronized (strategyStats)
+            {
+                if (!strategyStats.isEmpty())
+                    pw.printf("%n");
+
+                for (String name : strategyStats.keySet())
+                {
+                    long[] stats = strategyStats.get(name);
+                    pw.printf("Strategy %s: Calls: %,d Time: %s Cells Gained: %,d (%.2f cells/ms)%n", name, stats[0],
+                            formatTime(stats[1]), stats[2], stats[2] * 1e6 / Math.max(stats[1], 1));
+                }
+            }
+
+            MemoryStats.write(pw);
 
         } catch (IOException e)
         {
@@ -201,7 +302,7 @@ public class Timing
      * @param nanos Time in nanoseconds
      * @return Time formated to microseconds, milliseconds or seconds.
      */
-    private static String formatTime(long nanos)
+    public static String formatTime(long nanos)
     {
         if (nanos < 1_000_000)
             return nanos / 1_000 + " µs";
@@ -0,0 +1,188 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Replays the group operations of a trace recorded with "Driver -trace file". Every
+ * operation is run on fresh Group objects with the exact partial line and changed
+ * cells the Driver passed, without reading the puzzle or running the solving loop,
+ * so the line solving work of a real puzzle can be profiled and benchmarked on its
+ * own. A group's state only depends on its own operations, so the operations of a
+ * single group can be replayed in isolation. The groups are built with the thresholds
+ * of the trace's Config record, so a solve with a tuned profile replays the same.
+ * <p>
+ * Each result is checked against the recorded result. The fastest time of each
+ * operation over the runs is kept and the slowest operations and groups are printed.
+ */
+public class TraceReplay
+{
+    private int onlyGroup = -1;
+    private int runs = 1;
+    private int top = 10;
+
+    /**
+     * Replays a trace.
+     *
+     * @param args "-group id" to replay only one group, "-runs n", "-top n" for the
+     *             number of slowest operations printed and then the trace file.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        TraceReplay replay = new TraceReplay();
+        String fileName = null;
+
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-group" -> replay.onlyGroup = Integer.parseInt(args[++i]);
+                case "-runs" -> replay.runs = Integer.parseInt(args[++i]);
+                case "-top" -> replay.top = Integer.parseInt(args[++i]);
+                default -> fileName = args[i];
+            }
+        }
+
+        if (fileName == null)
+            throw new IllegalArgumentException("No trace file given");
+
+        if (!replay.run(SolveTrace.read(fileName)))
+            System.exit(1);
+    }
+
+    /**
+     * Replays the records of a trace the configured number of times.
+     *
+     * @param records The records of the trace, in the order they were recorded.
+     * @return True if every operation reproduced its recorded result.
+     */
+    public boolean run(ArrayList<SolveTrace.Record> records)
+    {
+        long[] bestNanos = new long[records.size()];
+        int mismatches = 0;
+
+        Arrays.fill(bestNanos, Long.MAX_VALUE);
+
+        for (int run = 0; run < runs; run++)
+        {
+            Timing.reset();
+            GenerationStatWriter.reset();
+
+            long runNanos = 0L;
+            mismatches = 0;
+            Group[] groups = new Group[records.size()];
+            SolverConfig config = SolverConfig.DEFAULT;
+
+            for (int i = 0; i < records.size(); i++)
+            {
+                SolveTrace.Record record = records.get(i);
+
+                if (record.operation == SolveTrace.Operation.Config)
+                {
+                    config = new SolverConfig("replay", SolverConfig.Strategy.LineSolving, record.permutationLimit,
+                            record.generationThreshold);
+                    continue;
+                }
+
+                if (onlyGroup >= 0 && record.groupId != onlyGroup)
+                    continue;
+
+                long start = System.nanoTime();
+                int[] result = replay(record, groups, config);
+                long nanos = System.nanoTime() - start;
+
+                if (record.operation == SolveTrace.Operation.Group)
+                    continue;
+
+                runNanos += nanos;
+                bestNanos[i] = Math.min(bestNanos[i], nanos);
+
+                if (!Arrays.equals(result, record.result))
+                {
+                    if (mismatches == 0)
+                        System.out.printf("Mismatch at record %d, %s of group %d:%n  recorded %s%n  replayed %s%n",
+                                i + 1, record.operation, record.groupId, Group.lineToString(record.result),
+                                Group.lineToString(result));
+                    mismatches++;
+                }
+            }
+
+            System.out.printf("Run %d: %s%n", run + 1, Timing.formatTime(runNanos));
+        }
+
+        printSlowest(records, bestNanos);
+
+        if (mismatches > 0)
+            System.out.printf("%,d operations did not reproduce their recorded result%n", mismatches);
+
+        return mismatches == 0;
+    }
+
+    /**
+     * Runs one recorded operation on its group, creating the group for a Group record.
+     *
+     * @param record The recorded operation.
+     * @param groups The groups of the trace by id.
+     * @param config The configuration the groups are built with.
+     * @return The result of the operation, null for a Group record.
+     */
+    private static int[] replay(SolveTrace.Record record, Group[] groups, SolverConfig config)
+    {
+        return switch (record.operation)
+        {
+            case Group ->
+            {
+                groups[record.groupId] = new Group(record.clues, record.size, record.groupId, config,
+                        CancellationToken.NONE);
+                yield null;
+            }
+            case Overlap -> groups[record.groupId].overlap();
+            case Update -> groups[record.groupId].updateGroup(Arrays.copyOf(record.partial, record.partial.length),
+                    record.filledChanges, record.blankChanges);
+            case Force -> groups[record.groupId].forceGeneration(Arrays.copyOf(record.partial, record.partial.length));
+            case Config -> null;
+        };
+    }
+
+    /**
+     * Prints the slowest operations and the total time of the slowest groups.
+     *
+     * @param records The records of the trace.
+     * @param bestNanos The fastest time of each operation, Long.MAX_VALUE if not replayed.
+     */
+    private void printSlowest(ArrayList<SolveTrace.Record> records, long[] bestNanos)
+    {
+        ArrayList<Integer> replayed = new ArrayList<>();
+        long[] groupNanos = new long[records.size()];
+        long total = 0L;
+
+        for (int i = 0; i < records.size(); i++)
+            if (records.get(i).operation != SolveTrace.Operation.Group && bestNanos[i] != Long.MAX_VALUE)
+            {
+                replayed.add(i);
+                groupNanos[records.get(i).groupId] += bestNanos[i];
+                total += bestNanos[i];
+            }
+
+        System.out.printf("%n%,d operations, fastest total: %s%n", replayed.size(), Timing.formatTime(total));
+
+        System.out.printf("%nSlowest operations:%n");
+        replayed.sort((a, b) -> Long.compare(bestNanos[b], bestNanos[a]));
+        for (int i = 0; i < Math.min(top, replayed.size()); i++)
+        {
+            SolveTrace.Record record = records.get(replayed.get(i));
+            System.out.printf("  Record %6d: %-7s Group %3d %-16s %s%n", replayed.get(i) + 1, record.operation,
+                    record.groupId, record.strategy == null ? "" : record.strategy,
+                    Timing.formatTime(bestNanos[replayed.get(i)]));
+        }
+
+        ArrayList<Integer> groupIds = new ArrayList<>();
+        for (int i = 0; i < groupNanos.length; i++)
+            if (groupNanos[i] > 0)
+                groupIds.add(i);
+
+        System.out.printf("%nSlowest groups:%n");
+        groupIds.sort((a, b) -> Long.compare(groupNanos[b], groupNanos[a]));
+        for (int i = 0; i < Math.min(top, groupIds.size()); i++)
+            System.out.printf("  Group %3d: %s%n", groupIds.get(i), Timing.formatTime(groupNanos[groupIds.get(i)]));
+    }
+}
@@ -112,4 +112,61 @@ public class Util
 
         return (int)result; // Cast back to int (assuming the result won't overflow)
     }
+
+    /**
+     * Checks if a solved line matches its clues, each clue being the length of a
+     * run of filled cells in order. A single clue of 0 matches an empty line.
+     *
+     * @param line The solved line, 1 for filled and -1 for blank.
+     * @param clues The clues of the line.
+     * @return True if the runs of filled cells in the line match the clues.
+     */
+    public static boolean lineMatchesClues(int[] line, int[] clues)
+    {
+        int clueIndex = 0;
+        int run = 0;
+
+        for (int i = 0; i <= line.length; i++)
+        {
+            if (i < line.length && line[i] == 1)
+                run++;
+            else if (run > 0)
+            {
+                if (clueIndex >= clues.length || clues[clueIndex] != run)
+                    return false;
+
+                clueIndex++;
+                run = 0;
+            }
+        }
+
+        // A line with no filled cells matches the clue 0.
+        if (clueIndex == 0 && clues.length == 1 && clues[0] == 0)
+            return true;
+
+        return clueIndex == clues.length;
+    }
+
+    /**
+     * Checks every row and column of a solved game board against the clues read
+     * from a puzzle file.
+     *
+     * @param gBoard The solved game board.
+     * @param fileContents The grid size followed by the row clues and then the column clues.
+     * @return True if every line of the game board matches its clues.
+     */
+    public static boolean boardMatchesClues(GameBoard gBoard, ArrayList<int[]> fileContents)
+    {
+        int length = gBoard.getLength();
+
+        for (int i = 0; i < length; i++)
+            if (!lineMatchesClues(gBoard.getGBoardRow(i), fileContents.get(i + 1)))
+                return false;
+
+        for (int i = 0; i < gBoard.getWidth(); i++)
+            if (!lineMatchesClues(gBoard.getGBoardColumn(i, length), fileContents.get(i + length + 1)))
+                return false;
+
+        return true;
+    }
 }